@@ -0,0 +1,96 @@
+package hr.com.vgv.asyncunit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hr.com.vgv.asyncunit.Results;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Wake-up latency of {@link Results#await(long, TimeUnit, int)}. Every invocation asks a spinning signaler thread for a
+ * single result and blocks until await returns, so the score is the round trip from request to wake-up.
+ *
+ * @author Vedran Vatavuk
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AwaitLatencyBenchmark
+{
+    @Param({"synced", "striped"})
+    private String type;
+
+    private final AtomicLong requested = new AtomicLong();
+
+    private volatile boolean running;
+
+    private Results results;
+
+    private Thread signaler;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        if ("striped".equals(type))
+        {
+            results = new Results.Striped();
+        }
+        else
+        {
+            results = new Results.Synced();
+        }
+        running = true;
+        signaler = new Thread(this::signal, "await-latency-signaler");
+        signaler.setDaemon(true);
+        signaler.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException
+    {
+        running = false;
+        signaler.join();
+    }
+
+    @Benchmark
+    public void await() throws InterruptedException
+    {
+        requested.incrementAndGet();
+        results.await(10, TimeUnit.SECONDS, 1);
+    }
+
+    /**
+     * Delivers one result for every request.
+     */
+    private void signal()
+    {
+        long served = 0;
+        while (running)
+        {
+            if (requested.get() > served)
+            {
+                served += 1;
+                results.addSuccess();
+            }
+            else
+            {
+                Thread.yield();
+            }
+        }
+    }
+}
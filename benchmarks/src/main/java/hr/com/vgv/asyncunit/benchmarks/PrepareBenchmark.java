@@ -0,0 +1,123 @@
+package hr.com.vgv.asyncunit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import hr.com.vgv.asyncunit.AsyncFlow;
+import hr.com.vgv.asyncunit.Results;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-invocation overhead of every {@link AsyncFlow.Single} prepare overload compared with invoking the raw lambda.
+ * Flow is recreated every iteration, so semaphore permits never overflow.
+ *
+ * @author Vedran Vatavuk
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrepareBenchmark
+{
+    @Param({"synced", "striped"})
+    private String type;
+
+    private Runnable raw;
+
+    private Runnable runnable;
+
+    private Consumer<Integer> consumer;
+
+    private BiConsumer<Integer, Integer> biconsumer;
+
+    private Supplier<Integer> supplier;
+
+    private Function<Integer, Integer> function;
+
+    private BiFunction<Integer, Integer, Integer> bifunction;
+
+    private Integer value;
+
+    @Setup(Level.Iteration)
+    public void setup(Blackhole blackhole)
+    {
+        Results results;
+        if ("striped".equals(type))
+        {
+            results = new Results.Striped();
+        }
+        else
+        {
+            results = new Results.Synced();
+        }
+        AsyncFlow.Single flow = new AsyncFlow.Single(results);
+        value = 42;
+        raw = () -> blackhole.consume(value);
+        runnable = flow.prepare(raw);
+        consumer = flow.prepare((Consumer<Integer>) blackhole::consume);
+        biconsumer = flow.prepare((BiConsumer<Integer, Integer>) (t, u) -> blackhole.consume(t));
+        supplier = flow.prepare(() -> value);
+        function = flow.prepareFn(t -> t);
+        bifunction = flow.prepareFn((Integer t, Integer u) -> t);
+    }
+
+    @Benchmark
+    public void baseline()
+    {
+        raw.run();
+    }
+
+    @Benchmark
+    public void runnable()
+    {
+        runnable.run();
+    }
+
+    @Benchmark
+    public void consumer()
+    {
+        consumer.accept(value);
+    }
+
+    @Benchmark
+    public void biconsumer()
+    {
+        biconsumer.accept(value, value);
+    }
+
+    @Benchmark
+    public Integer supplier()
+    {
+        return supplier.get();
+    }
+
+    @Benchmark
+    public Integer function()
+    {
+        return function.apply(value);
+    }
+
+    @Benchmark
+    public Integer bifunction()
+    {
+        return bifunction.apply(value, value);
+    }
+}
@@ -0,0 +1,72 @@
+package hr.com.vgv.asyncunit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import hr.com.vgv.asyncunit.Results;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Success signaling throughput of {@link Results} implementations when many threads report at the same time.
+ * Results are recreated every iteration, so semaphore permits never overflow.
+ *
+ * @author Vedran Vatavuk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultsContentionBenchmark
+{
+    @Param({"synced", "striped"})
+    private String type;
+
+    private Results results;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        if ("striped".equals(type))
+        {
+            results = new Results.Striped();
+        }
+        else
+        {
+            results = new Results.Synced();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addSuccessSingleThread()
+    {
+        results.addSuccess();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void addSuccessEightThreads()
+    {
+        results.addSuccess();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void addSuccessSixtyFourThreads()
+    {
+        results.addSuccess();
+    }
+}
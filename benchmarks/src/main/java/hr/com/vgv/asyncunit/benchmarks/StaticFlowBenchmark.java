@@ -0,0 +1,68 @@
+package hr.com.vgv.asyncunit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import hr.com.vgv.asyncunit.AsyncFlow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of preparing through the static {@link AsyncFlow} thread-bound flow compared with an explicit
+ * {@link AsyncFlow.Single}, on one and on eight threads. The difference is the static flow lookup, measured through the
+ * public API only. Run with {@code -prof gc} to verify the lookup adds no allocation once the flow exists.
+ *
+ * @author Vedran Vatavuk
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaticFlowBenchmark
+{
+    private final Runnable runnable = () -> { };
+
+    private AsyncFlow.Single single;
+
+    @Setup
+    public void setup()
+    {
+        single = new AsyncFlow.Single();
+    }
+
+    @Benchmark
+    public Runnable single()
+    {
+        return single.prepare(runnable);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Runnable singleEightThreads()
+    {
+        return single.prepare(runnable);
+    }
+
+    @Benchmark
+    public Runnable staticFlow()
+    {
+        return AsyncFlow.prepare(runnable);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Runnable staticFlowEightThreads()
+    {
+        return AsyncFlow.prepare(runnable);
+    }
+}
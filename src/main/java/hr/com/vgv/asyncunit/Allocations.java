@@ -0,0 +1,214 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes allocated by every flow execution. Allocation counter of the worker thread is sampled when the execution
+ * starts and when it finishes, so only allocations of the code under test are counted. The first executions can be
+ * left out as warm-up, e.g. until lazy initialization and JIT compilation are done.
+ * <p>
+ * On Java 21 the counter is sampled without allocation and nothing is subtracted. On older JVMs sampling allocates
+ * until it is JIT compiled. Its cost is then measured once warm-up is over, on the worker running the first recorded
+ * execution, after sampling enough times to get compiled, and subtracted from every recorded execution.
+ * <p>
+ * Example of usage:
+ * <p>
+ * AsyncFlow.Single flow = new AsyncFlow.Single().with(new Allocations(10_000));
+ * ...
+ * flow.awaitReport(1000, 100_000).assertAllocatedAtMost(0);
+ * <p>
+ * Requires a JVM which supports thread allocation accounting, e.g. HotSpot.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class Allocations implements Probe
+{
+    /**
+     * Number of samples taken to measure cost of sampling, enough to get sampling JIT compiled.
+     */
+    private static final int CALIBRATION = 20_000;
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    private final long warmup;
+
+    private final AtomicLong started = new AtomicLong();
+
+    private final AtomicBoolean calibrating = new AtomicBoolean(false);
+
+    private volatile boolean calibrated;
+
+    private volatile long overhead;
+
+    private final Histogram histogram = new Histogram();
+
+    public Allocations()
+    {
+        this(0);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param warmup Number of first executions which are not recorded
+     */
+    public Allocations(long warmup)
+    {
+        this.threads = threads();
+        this.warmup = warmup;
+        this.calibrated = ThreadAllocations.exact();
+    }
+
+    @Override
+    public long enter()
+    {
+        if (started.get() < warmup && started.getAndIncrement() < warmup)
+        {
+            return -1;
+        }
+        if (!calibrated)
+        {
+            calibrate();
+        }
+        return ThreadAllocations.current(threads);
+    }
+
+    @Override
+    public void exit(long token)
+    {
+        if (token >= 0)
+        {
+            histogram.record(ThreadAllocations.current(threads) - token - overhead);
+        }
+    }
+
+    /**
+     * Number of recorded executions.
+     *
+     * @return Count
+     */
+    public long count()
+    {
+        return histogram.count();
+    }
+
+    /**
+     * Highest number of bytes allocated by a single execution.
+     *
+     * @return Bytes
+     */
+    public long max()
+    {
+        return histogram.max();
+    }
+
+    /**
+     * Mean number of bytes allocated by an execution.
+     *
+     * @return Bytes
+     */
+    public double mean()
+    {
+        return histogram.mean();
+    }
+
+    /**
+     * Number of bytes below or at which given fraction of executions allocated.
+     *
+     * @param fraction Fraction between 0 and 1, e.g. 0.99 for 99th percentile
+     * @return Bytes
+     */
+    public long percentile(double fraction)
+    {
+        return histogram.percentile(fraction);
+    }
+
+    /**
+     * Raises AssertionError if any recorded execution allocated more than a given number of bytes.
+     *
+     * @param bytes Limit
+     */
+    public void assertAtMost(long bytes)
+    {
+        if (max() > bytes)
+        {
+            throw new AssertionError(
+                String.format("Execution allocated %d bytes instead of at most %d. %s", max(), bytes, this)
+            );
+        }
+    }
+
+    /**
+     * Raises AssertionError if recorded executions allocated more than a given number of bytes on average.
+     *
+     * @param bytes Limit
+     */
+    public void assertMeanAtMost(long bytes)
+    {
+        if (mean() > bytes)
+        {
+            throw new AssertionError(
+                String.format(
+                    "Executions allocated %.1f bytes on average instead of at most %d. %s", mean(), bytes, this
+                )
+            );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "Allocated bytes of %d executions: mean %.1f, p50 %d, p90 %d, p99 %d, max %d",
+            count(), mean(), percentile(0.5), percentile(0.9), percentile(0.99), max()
+        );
+    }
+
+    /**
+     * Fetch thread MXBean with allocation accounting enabled.
+     *
+     * @return Thread MXBean
+     */
+    private static com.sun.management.ThreadMXBean threads()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+            || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            throw new IllegalStateException("Thread allocation accounting is not supported by this JVM");
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemoryEnabled())
+        {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        return threads;
+    }
+
+    /**
+     * Measures number of bytes allocated by sampling itself on the current thread. Other threads entering meanwhile
+     * wait until it's measured.
+     */
+    private void calibrate()
+    {
+        if (calibrating.compareAndSet(false, true))
+        {
+            long bytes = Long.MAX_VALUE;
+            for (int idx = 0; idx < CALIBRATION; idx++)
+            {
+                long start = ThreadAllocations.current(threads);
+                bytes = Math.min(bytes, ThreadAllocations.current(threads) - start);
+            }
+            overhead = bytes;
+            calibrated = true;
+        }
+        while (!calibrated)
+        {
+            Thread.yield();
+        }
+    }
+}
@@ -3,9 +3,19 @@ package hr.com.vgv.asyncunit;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -25,13 +35,14 @@ import java.util.function.Supplier;
  * AsyncFlow.await();
  *
  * <b>Note</b>: Prepare and await calls must be executed on the same thread, usually this will be
- * the main test thread.
+ * the main test thread. Tasks running on other threads can report to the same flow through
+ * {@link #propagate(Runnable)} and its overloads.
  *
  * @author Vedran Vatavuk
  */
 public class AsyncFlow
 {
-    private static final Map<Long, AsyncFlow.Single> flow = new ConcurrentHashMap<>();
+    private static final FlowRegistry registry = new FlowRegistry();
 
     /**
      * Prepares Runnable for testing in main class.
@@ -108,6 +119,88 @@ public class AsyncFlow
         return currentFlow().prepareFn(function);
     }
 
+    /**
+     * Wraps ExecutorService so that every submitted task is prepared for testing in main class.
+     *
+     * @param executor ExecutorService running tasks under test
+     * @return Prepared executor
+     */
+    public static PreparedExecutor wrap(ExecutorService executor)
+    {
+        return currentFlow().wrap(executor);
+    }
+
+    /**
+     * Propagates flow of the current thread to Runnable running on another thread. Prepare calls made while the
+     * Runnable runs report to the flow of the current thread.
+     *
+     * @param runnable Runnable
+     * @return Runnable
+     */
+    public static Runnable propagate(Runnable runnable)
+    {
+        FlowRegistry.Entry captured = registry.capture();
+        return () -> {
+            FlowRegistry.Entry previous = registry.bind(captured);
+            try
+            {
+                runnable.run();
+            }
+            finally
+            {
+                registry.restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Propagates flow of the current thread to Callable running on another thread. Prepare calls made while the
+     * Callable runs report to the flow of the current thread.
+     *
+     * @param callable Callable
+     * @param <V>      V
+     * @return Callable
+     */
+    public static <V> Callable<V> propagate(Callable<V> callable)
+    {
+        FlowRegistry.Entry captured = registry.capture();
+        return () -> {
+            FlowRegistry.Entry previous = registry.bind(captured);
+            try
+            {
+                return callable.call();
+            }
+            finally
+            {
+                registry.restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Propagates flow of the current thread to ForkJoin task. Subtasks forked by the task must be propagated too in
+     * order to report to the same flow.
+     *
+     * @param task ForkJoin task
+     * @param <T>  T
+     * @return ForkJoin task
+     */
+    public static <T> ForkJoinTask<T> propagate(ForkJoinTask<T> task)
+    {
+        return new PropagatedTask<>(registry, task);
+    }
+
+    /**
+     * Wraps ExecutorService so that every submitted task runs with the flow of the submitting thread.
+     *
+     * @param executor Executor service
+     * @return Propagating executor service
+     */
+    public static PropagatingExecutor propagate(ExecutorService executor)
+    {
+        return new PropagatingExecutor(executor);
+    }
+
     /**
      * Waits for a prepared async flow to finishes.
      *
@@ -165,44 +258,108 @@ public class AsyncFlow
     {
         try
         {
-            currentFlow().await(timeout, timeUnit, times);
+            registry.awaited().await(timeout, timeUnit, times);
+        }
+        finally
+        {
+            registry.release();
+        }
+    }
+
+    /**
+     * Asynchronously waits for a prepared async flow to finishes defined number of times. Returned future completes
+     * exceptionally with AssertionError after timeout expires. No thread is blocked while waiting.
+     *
+     * @param timeout  Timeout
+     * @param timeUnit Timeout units
+     * @param times    Number of flow executions to wait
+     * @return Future completed when flow finishes
+     */
+    public static CompletableFuture<Void> awaitAsync(long timeout, TimeUnit timeUnit, int times)
+    {
+        try
+        {
+            return registry.awaited().awaitAsync(timeout, timeUnit, times);
         }
         finally
         {
-            flow.remove(currentThread());
+            registry.release();
         }
     }
 
     /**
-     * Fetch current thread.
+     * Marks a point in the code under test where interleaving explorer may switch to another thread. It does nothing
+     * outside of exploration.
+     */
+    public static void yieldPoint()
+    {
+        Schedule.yieldCurrent();
+    }
+
+    /**
+     * Number of flows prepared through static methods which weren't awaited yet. Flows of dead threads and flows idle
+     * for longer than time to live are evicted and not counted.
+     *
+     * @return Number of registered flows
+     */
+    public static int registered()
+    {
+        return registry.size();
+    }
+
+    /**
+     * Changes time to live of flows prepared through static methods and never awaited. Default is 10 minutes. An idle
+     * flow is evicted and its thread starts a new flow on the next prepare call.
      *
-     * @return Thread
+     * @param ttl  Time to live
+     * @param unit Time unit
      */
-    private static long currentThread()
+    public static void evictAfter(long ttl, TimeUnit unit)
     {
-        return Thread.currentThread().getId();
+        registry.evictAfter(ttl, unit);
     }
 
     /**
-     * Fetch async flow in current thread or instantiate a new one if it doesn't exist.
+     * Fetch async flow in current thread or instantiate a new one if it doesn't exist or was evicted. Once the flow
+     * exists the lookup is a thread-local read and allocates nothing.
      *
      * @return Async flow
      */
-    private static AsyncFlow.Single currentFlow()
+    static AsyncFlow.Single currentFlow()
     {
-        long thread = currentThread();
-        flow.putIfAbsent(thread, new AsyncFlow.Single());
-        return flow.get(thread);
+        return registry.current();
+    }
+
+    /**
+     * Sweeps flow registry immediately instead of waiting for the next scheduled sweep.
+     */
+    static void sweep()
+    {
+        registry.sweep();
     }
 
     /**
      * Async flow bounded to a single instance scope. Enables lazy flow preparation, prepare calls doesn't need
      * to be executed on the same thread where await call is triggered.
+     * <p>
+     * Flow fails fast when constructed with fail-fast results, e.g. {@code new AsyncFlow.Single(new Results.Synced(true))}.
+     * Await then returns on the first matching failure instead of waiting for all executions.
      */
     public static class Single
     {
+        private static final long[] NO_TOKENS = new long[0];
+
         private final Results results;
-        private final Collection<Class<? extends Throwable>> throwables;
+
+        private final ThrowableMatcher throwables;
+
+        private final Probe[] probes;
+
+        private final Checkpoints checkpoints;
+
+        private final FlowMetrics metrics;
+
+        private final Outcome reported = new Reported();
 
         public Single()
         {
@@ -210,6 +367,7 @@ public class AsyncFlow
         }
 
         @SafeVarargs
+        @SuppressWarnings("varargs")
         public Single(Class<? extends Throwable>... throwables) {
             this(Arrays.asList(throwables));
         }
@@ -224,14 +382,40 @@ public class AsyncFlow
         }
 
         @SafeVarargs
+        @SuppressWarnings("varargs")
         public Single(Results results, Class<? extends Throwable>... throwables) {
             this(results, Arrays.asList(throwables));
         }
 
         public Single(Results results, Collection<Class<? extends Throwable>> throwables)
+        {
+            this(
+                results, new ThrowableMatcher(throwables), new Probe[0], new Checkpoints(), FlowMetrics.of(results)
+            );
+        }
+
+        private Single(
+            Results results, ThrowableMatcher throwables, Probe[] probes, Checkpoints checkpoints, FlowMetrics metrics)
         {
             this.results = results;
             this.throwables = throwables;
+            this.probes = probes;
+            this.checkpoints = checkpoints;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Creates flow that shares results, checkpoints and metrics with this one and additionally measures every execution with a given probe.
+         * Executions must be prepared by the returned flow to be measured.
+         *
+         * @param probe Probe
+         * @return Measured flow
+         */
+        public final AsyncFlow.Single with(Probe probe)
+        {
+            Probe[] extended = Arrays.copyOf(probes, probes.length + 1);
+            extended[probes.length] = probe;
+            return new AsyncFlow.Single(results, throwables, extended, checkpoints, metrics);
         }
 
         /**
@@ -269,21 +453,243 @@ public class AsyncFlow
          */
         public final <T, U> BiConsumer<T, U> prepare(BiConsumer<T, U> consumer)
         {
-            return (t, u) -> {
+            BiFunction<T, U, Object> prepared = prepareFn((T t, U u) -> {
+                consumer.accept(t, u);
+                return null;
+            });
+            return prepared::apply;
+        }
+
+        /**
+         * Wraps ExecutorService so that every submitted task reports its result into this flow.
+         *
+         * @param executor ExecutorService running tasks under test
+         * @return Prepared executor
+         */
+        public final PreparedExecutor wrap(ExecutorService executor)
+        {
+            return new PreparedExecutor(this, executor);
+        }
+
+        /**
+         * Prepares Runnable which reports to a named checkpoint instead of flow results. Checkpoint is awaited with
+         * {@link #await(String, long, TimeUnit, int)}.
+         *
+         * @param checkpoint Checkpoint name
+         * @param runnable   Runnable under test
+         * @return Runnable
+         */
+        public final Runnable prepare(String checkpoint, Runnable runnable)
+        {
+            Function<Object, Object> prepared = prepareFn(checkpoint, t -> {
+                runnable.run();
+                return null;
+            });
+            return () -> prepared.apply(null);
+        }
+
+        /**
+         * Prepares Function which reports to a named checkpoint instead of flow results. Checkpoint is awaited with
+         * {@link #await(String, long, TimeUnit, int)}.
+         *
+         * @param checkpoint Checkpoint name
+         * @param function   Function under test
+         * @param <T>        T
+         * @param <R>        R
+         * @return Function
+         */
+        public final <T, R> Function<T, R> prepareFn(String checkpoint, Function<T, R> function)
+        {
+            Outcome arrival = new Arrival(checkpoints.get(checkpoint));
+            Execution<T, Object, R, RuntimeException> body = (T t, Object ignored) -> function.apply(t);
+            return t -> execute(arrival, body, t, null);
+        }
+
+        /**
+         * Tracks completion of futures under test. Each completed future is reported as a single flow execution.
+         *
+         * @param futures Futures under test
+         */
+        public final void track(CompletableFuture<?>... futures)
+        {
+            track(Arrays.asList(futures));
+        }
+
+        /**
+         * Tracks completion of futures under test. Each completed future is reported as a single flow execution.
+         *
+         * @param futures Futures under test
+         */
+        public final void track(Collection<? extends CompletableFuture<?>> futures)
+        {
+            track(futures, value -> { });
+        }
+
+        /**
+         * Tracks completion of a future under test and asserts its value.
+         *
+         * @param future    Future under test
+         * @param assertion Assertion of a completed value
+         * @param <T>       T
+         */
+        public final <T> void track(CompletableFuture<? extends T> future, Consumer<? super T> assertion)
+        {
+            track(Collections.singletonList(future), assertion);
+        }
+
+        /**
+         * Tracks completion of futures under test and asserts their values. A single completion hook is shared by all
+         * futures and reports directly into flow results.
+         *
+         * @param futures   Futures under test
+         * @param assertion Assertion of a completed value
+         * @param <T>       T
+         */
+        public final <T> void track(
+            Collection<? extends CompletableFuture<? extends T>> futures, Consumer<? super T> assertion)
+        {
+            Completion<T> completion = new Completion<>(assertion);
+            for (CompletableFuture<? extends T> future : futures)
+            {
+                future.whenComplete(completion);
+            }
+        }
+
+        /**
+         * Signals that an execution was handed to another thread and will run later.
+         */
+        final void submit()
+        {
+            results.submit();
+        }
+
+        /**
+         * Signals that a submitted execution has ended or will never run.
+         */
+        final void withdraw()
+        {
+            results.withdraw();
+        }
+
+        /**
+         * Runs Runnable and reports its result into this flow.
+         *
+         * @param runnable Runnable under test
+         */
+        final void run(Runnable runnable)
+        {
+            execute(
+                reported, (Runnable body, Object ignored) -> {
+                    body.run();
+                    return null;
+                }, runnable, null
+            );
+        }
+
+        /**
+         * Calls Callable and reports its result into this flow.
+         *
+         * @param callable Callable under test
+         * @param <V>      V
+         * @return Result
+         * @throws Exception If callable fails
+         */
+        final <V> V call(Callable<V> callable) throws Exception
+        {
+            return execute(reported, (Callable<V> body, Object ignored) -> body.call(), callable, null);
+        }
+
+        /**
+         * Executes code under test between probes and reports its result to a given outcome. Matching throwables
+         * fail the outcome, other throwables abandon it, and both are rethrown to the caller.
+         *
+         * @param outcome Outcome of the execution
+         * @param body    Code under test
+         * @param t       First argument
+         * @param u       Second argument
+         * @param <T>     T
+         * @param <U>     U
+         * @param <R>     R
+         * @param <E>     Throwable of code under test
+         * @return Result
+         * @throws E If code under test fails
+         */
+        private <T, U, R, E extends Throwable> R execute(
+            Outcome outcome, Execution<T, U, R, E> body, T t, U u) throws E
+        {
+            long generation = outcome.begin();
+            Object event = FlightRecorder.executing();
+            long[] tokens = enter();
+            try
+            {
+                R result;
                 try
                 {
-                    consumer.accept(t, u);
-                    results.addSuccess();
+                    result = body.apply(t, u);
                 }
-                catch (Throwable throwable)
+                finally
                 {
-                    if (failOnThrowable(throwable))
-                    {
-                        results.addFailure(throwable);
-                    }
-                    throw throwable;
+                    exit(tokens);
+                }
+                FlightRecorder.executed(event, null);
+                outcome.succeeded(generation);
+                return result;
+            }
+            catch (Throwable throwable)
+            {
+                FlightRecorder.executed(event, throwable);
+                if (failOnThrowable(throwable))
+                {
+                    outcome.failed(generation, throwable);
+                }
+                else
+                {
+                    outcome.abandoned(generation);
                 }
-            };
+                throw throwable;
+            }
+        }
+
+        /**
+         * Enters probes before execution.
+         *
+         * @return Probe tokens
+         */
+        private long[] enter()
+        {
+            if (probes.length == 0)
+            {
+                return NO_TOKENS;
+            }
+            long[] tokens = new long[probes.length];
+            for (int idx = 0; idx < probes.length; idx++)
+            {
+                tokens[idx] = probes[idx].enter();
+            }
+            return tokens;
+        }
+
+        /**
+         * Exits probes after execution in reverse order.
+         *
+         * @param tokens Probe tokens
+         */
+        private void exit(long[] tokens)
+        {
+            for (int idx = probes.length - 1; idx >= 0; idx--)
+            {
+                probes[idx].exit(tokens[idx]);
+            }
+        }
+
+        /**
+         * Live metrics of this flow.
+         *
+         * @return Metrics
+         */
+        final FlowMetrics metrics()
+        {
+            return metrics;
         }
 
         /**
@@ -293,8 +699,7 @@ public class AsyncFlow
          */
         private boolean failOnThrowable(Throwable throwable)
         {
-            DerivedClass cls = new DerivedClass(throwable.getClass());
-            return throwables.stream().anyMatch(cls::isRelatedTo);
+            return throwables.matches(throwable);
         }
 
         /**
@@ -335,22 +740,203 @@ public class AsyncFlow
          */
         public final <T, U, R> BiFunction<T, U, R> prepareFn(BiFunction<T, U, R> function)
         {
-            return (T t, U u) -> {
-                try
+            Execution<T, U, R, RuntimeException> body = function::apply;
+            return (T t, U u) -> execute(reported, body, t, u);
+        }
+
+        /**
+         * Prepares BiFunction for testing in main class and records its invocations into a history.
+         *
+         * @param history  History of operations
+         * @param function BiFunction under test
+         * @param <T>      T
+         * @param <U>      U
+         * @param <R>      R
+         * @return BiFunction
+         */
+        public final <T, U, R> BiFunction<T, U, R> prepareFn(History<T, U, R> history, BiFunction<T, U, R> function)
+        {
+            Execution<T, U, R, RuntimeException> body = (T t, U u) -> history.apply(function, t, u);
+            return (T t, U u) -> execute(reported, body, t, u);
+        }
+
+        /**
+         * Prepares Function for testing in main class and records its invocations into a history. Second input of its
+         * operations is null.
+         *
+         * @param history  History of operations
+         * @param function Function under test
+         * @param <T>      T
+         * @param <U>      U
+         * @param <R>      R
+         * @return Function
+         */
+        public final <T, U, R> Function<T, R> prepareFn(History<T, U, R> history, Function<T, R> function)
+        {
+            BiFunction<T, U, R> prepared = prepareFn(history, (T t, U u) -> function.apply(t));
+            return t -> prepared.apply(t, null);
+        }
+
+        /**
+         * Code under test.
+         *
+         * @param <T> T
+         * @param <U> U
+         * @param <R> R
+         * @param <E> E
+         */
+        private interface Execution<T, U, R, E extends Throwable>
+        {
+            R apply(T t, U u) throws E;
+        }
+
+        /**
+         * Destination of execution results.
+         */
+        private interface Outcome
+        {
+            /**
+             * Signals that execution started.
+             *
+             * @return Generation of the execution
+             */
+            long begin();
+
+            /**
+             * Signals successful execution.
+             *
+             * @param generation Generation of the execution
+             */
+            void succeeded(long generation);
+
+            /**
+             * Signals failed execution.
+             *
+             * @param generation Generation of the execution
+             * @param throwable  Failure
+             */
+            void failed(long generation, Throwable throwable);
+
+            /**
+             * Signals execution that ended with a throwable which is not reported.
+             *
+             * @param generation Generation of the execution
+             */
+            void abandoned(long generation);
+        }
+
+        /**
+         * Outcome reported into flow results.
+         */
+        private final class Reported implements Outcome
+        {
+            @Override
+            public long begin()
+            {
+                return results.begin();
+            }
+
+            @Override
+            public void succeeded(long generation)
+            {
+                metrics.succeeded();
+                results.addSuccess(generation);
+            }
+
+            @Override
+            public void failed(long generation, Throwable throwable)
+            {
+                metrics.failed();
+                results.addFailure(generation, throwable);
+            }
+
+            @Override
+            public void abandoned(long generation)
+            {
+                results.abandon(generation);
+            }
+        }
+
+        /**
+         * Outcome reported to a named checkpoint.
+         */
+        private final class Arrival implements Outcome
+        {
+            private final Checkpoints.Checkpoint target;
+
+            Arrival(Checkpoints.Checkpoint target)
+            {
+                this.target = target;
+            }
+
+            @Override
+            public long begin()
+            {
+                return 0;
+            }
+
+            @Override
+            public void succeeded(long generation)
+            {
+                metrics.checkpointed();
+                target.arrive(null);
+            }
+
+            @Override
+            public void failed(long generation, Throwable throwable)
+            {
+                metrics.checkpointed();
+                target.arrive(throwable);
+            }
+
+            @Override
+            public void abandoned(long generation)
+            {
+            }
+        }
+
+        /**
+         * Completion hook of tracked futures.
+         *
+         * @param <T> T
+         */
+        private final class Completion<T> implements BiConsumer<T, Throwable>
+        {
+            private final Consumer<? super T> assertion;
+
+            Completion(Consumer<? super T> assertion)
+            {
+                this.assertion = assertion;
+            }
+
+            @Override
+            public void accept(T value, Throwable error)
+            {
+                if (error == null)
                 {
-                    R result = function.apply(t, u);
-                    results.addSuccess();
-                    return result;
+                    run(() -> assertion.accept(value));
                 }
-                catch (Throwable throwable)
+                else
                 {
-                    if (failOnThrowable(throwable))
+                    Throwable cause = error;
+                    if (cause instanceof CompletionException && cause.getCause() != null)
+                    {
+                        cause = cause.getCause();
+                    }
+                    try
                     {
-                        results.addFailure(throwable);
+                        execute(
+                            reported, (Throwable failure, Object ignored) -> {
+                                throw failure;
+                            }, cause, null
+                        );
+                    }
+                    catch (Throwable tracked)
+                    {
+                        // future is already completed with this failure, it only has to be reported
                     }
-                    throw throwable;
                 }
-            };
+            }
         }
 
         /**
@@ -408,7 +994,585 @@ public class AsyncFlow
          */
         public final void await(long timeout, TimeUnit timeUnit, int times) throws InterruptedException
         {
-            results.await(timeout, timeUnit, times);
+            metrics.awaiting(times);
+            try
+            {
+                results.await(timeout, timeUnit, times);
+            }
+            finally
+            {
+                metrics.awaited();
+                awaited();
+            }
+        }
+
+        /**
+         * Waits for a prepared async flow to finishes like {@link #await(long)} and reports measurements of its probes.
+         *
+         * @param timeout Timeout in milliseconds
+         * @return Report
+         * @throws InterruptedException If interrupted
+         */
+        public final Report awaitReport(long timeout) throws InterruptedException
+        {
+            return awaitReport(timeout, TimeUnit.MILLISECONDS, 1);
+        }
+
+        /**
+         * Waits for a prepared async flow to finishes defined number of times like {@link #await(long, int)} and
+         * reports measurements of its probes.
+         *
+         * @param timeout Timeout in milliseconds
+         * @param times   Number of flow executions to wait
+         * @return Report
+         * @throws InterruptedException If interrupted
+         */
+        public final Report awaitReport(long timeout, int times) throws InterruptedException
+        {
+            return awaitReport(timeout, TimeUnit.MILLISECONDS, times);
+        }
+
+        /**
+         * Waits for a prepared async flow to finishes defined number of times like {@link #await(long, TimeUnit, int)}
+         * and reports measurements of its probes.
+         *
+         * @param timeout  Timeout
+         * @param timeUnit Timeout units
+         * @param times    Number of flow executions to wait
+         * @return Report
+         * @throws InterruptedException If interrupted
+         */
+        public final Report awaitReport(long timeout, TimeUnit timeUnit, int times) throws InterruptedException
+        {
+            await(timeout, timeUnit, times);
+            return new Report(probes);
+        }
+
+        /**
+         * Waits until a named checkpoint is reached defined number of times in total. It raises AssertionError after
+         * timeout expires. Checkpoints count cumulatively and any number of threads can await them concurrently.
+         *
+         * @param checkpoint Checkpoint name
+         * @param timeout    Timeout in milliseconds
+         * @param times      Number of checkpoint executions to wait
+         * @throws InterruptedException If interrupted
+         */
+        public final void await(String checkpoint, long timeout, int times) throws InterruptedException
+        {
+            await(checkpoint, timeout, TimeUnit.MILLISECONDS, times);
+        }
+
+        /**
+         * Waits until a named checkpoint is reached defined number of times in total. It raises AssertionError after
+         * timeout expires. Checkpoints count cumulatively and any number of threads can await them concurrently.
+         *
+         * @param checkpoint Checkpoint name
+         * @param timeout    Timeout
+         * @param timeUnit   Timeout units
+         * @param times      Number of checkpoint executions to wait
+         * @throws InterruptedException If interrupted
+         */
+        public final void await(String checkpoint, long timeout, TimeUnit timeUnit, int times)
+            throws InterruptedException
+        {
+            checkpoints.get(checkpoint).await(timeout, timeUnit, times);
+        }
+
+        /**
+         * Asynchronously waits for a prepared async flow to finishes defined number of times. Returned future completes
+         * exceptionally with AssertionError after timeout expires. No thread is blocked while waiting.
+         *
+         * @param timeout  Timeout
+         * @param timeUnit Timeout units
+         * @param times    Number of flow executions to wait
+         * @return Future completed when flow finishes, after its metrics and probes are updated
+         */
+        public final CompletableFuture<Void> awaitAsync(long timeout, TimeUnit timeUnit, int times)
+        {
+            metrics.awaitingAsync(times);
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            results.awaitAsync(timeout, timeUnit, times).whenComplete(
+                (value, error) -> {
+                    metrics.awaited();
+                    awaited();
+                    if (error == null)
+                    {
+                        future.complete(value);
+                    }
+                    else
+                    {
+                        future.completeExceptionally(error);
+                    }
+                }
+            );
+            return future;
+        }
+
+        /**
+         * Notifies probes that the flow was awaited.
+         */
+        private void awaited()
+        {
+            for (Probe probe : probes)
+            {
+                probe.awaited();
+            }
+        }
+    }
+
+    /**
+     * Stress run of a code under test. Drives prepared code from a number of threads released together by a common
+     * start gate, so executions contend as much as possible. Stops after a given number of invocations or after a given
+     * duration, then awaits the flow and reports throughput, failures and distribution of invocations between threads.
+     * <p>
+     * Example of usage:
+     * <p>
+     * StressReport report = new AsyncFlow.Stress(16).run(1_000_000, () -&gt; counter.incrementAndGet());
+     * assertEquals(1_000_000, counter.get());
+     * <p>
+     * Flow rethrows the propagated failure once all threads finish, with the run summary attached as suppressed
+     * error. If more than one invocation failed, rethrown failure is an AssertionError summarizing them, caused by the
+     * first one.
+     */
+    public static class Stress
+    {
+        private final AsyncFlow.Single flow;
+
+        private final int threads;
+
+        public Stress(int threads)
+        {
+            this(new AsyncFlow.Single(new Results.Striped()), threads);
+        }
+
+        public Stress(AsyncFlow.Single flow, int threads)
+        {
+            this.flow = flow;
+            this.threads = threads;
+        }
+
+        /**
+         * Runs Runnable given number of times in total.
+         *
+         * @param invocations Number of invocations
+         * @param runnable    Runnable under test
+         * @return Stress report
+         * @throws InterruptedException If interrupted
+         */
+        public final StressReport run(int invocations, Runnable runnable) throws InterruptedException
+        {
+            Runnable prepared = flow.prepare(runnable);
+            return drive(invocations, Long.MAX_VALUE, thread -> prepared.run());
+        }
+
+        /**
+         * Runs Function given number of times in total. Function receives index of the thread that invokes it.
+         *
+         * @param invocations Number of invocations
+         * @param function    Function under test
+         * @param <R>         R
+         * @return Stress report
+         * @throws InterruptedException If interrupted
+         */
+        public final <R> StressReport run(int invocations, Function<Integer, R> function) throws InterruptedException
+        {
+            Function<Integer, R> prepared = flow.prepareFn(function);
+            return drive(invocations, Long.MAX_VALUE, prepared::apply);
+        }
+
+        /**
+         * Runs Runnable repeatedly until duration expires.
+         *
+         * @param duration Duration
+         * @param unit     Time unit
+         * @param runnable Runnable under test
+         * @return Stress report
+         * @throws InterruptedException If interrupted
+         */
+        public final StressReport run(long duration, TimeUnit unit, Runnable runnable) throws InterruptedException
+        {
+            Runnable prepared = flow.prepare(runnable);
+            return drive(Integer.MAX_VALUE, unit.toNanos(duration), thread -> prepared.run());
+        }
+
+        /**
+         * Runs Function repeatedly until duration expires. Function receives index of the thread that invokes it.
+         *
+         * @param duration Duration
+         * @param unit     Time unit
+         * @param function Function under test
+         * @param <R>      R
+         * @return Stress report
+         * @throws InterruptedException If interrupted
+         */
+        public final <R> StressReport run(long duration, TimeUnit unit, Function<Integer, R> function)
+            throws InterruptedException
+        {
+            Function<Integer, R> prepared = flow.prepareFn(function);
+            return drive(Integer.MAX_VALUE, unit.toNanos(duration), prepared::apply);
+        }
+
+        /**
+         * Drives prepared code from all threads behind a common start gate. Workers count in local variables and
+         * publish their counts once they finish, so adjacent slots of the shared arrays aren't written on every
+         * invocation.
+         *
+         * @param invocations Maximum number of invocations in total
+         * @param duration    Maximum duration in nanoseconds
+         * @param prepared    Prepared code receiving thread index
+         * @return Stress report
+         * @throws InterruptedException If interrupted
+         */
+        private StressReport drive(int invocations, long duration, Consumer<Integer> prepared)
+            throws InterruptedException
+        {
+            long[] executed = new long[threads];
+            long[] failed = new long[threads];
+            long[] reported = new long[threads];
+            CountDownLatch ready = new CountDownLatch(threads);
+            CountDownLatch gate = new CountDownLatch(1);
+            long[] start = new long[1];
+            Thread[] workers = new Thread[threads];
+            for (int idx = 0; idx < threads; idx++)
+            {
+                int thread = idx;
+                long share = invocations / threads + (thread < invocations % threads ? 1 : 0);
+                workers[idx] = new Thread(() -> {
+                    ready.countDown();
+                    try
+                    {
+                        gate.await();
+                    }
+                    catch (InterruptedException exception)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    Integer index = thread;
+                    long done = 0;
+                    long failures = 0;
+                    long reports = 0;
+                    try
+                    {
+                        while (done < share
+                            && (duration == Long.MAX_VALUE || System.nanoTime() - start[0] < duration))
+                        {
+                            done += 1;
+                            try
+                            {
+                                prepared.accept(index);
+                                reports += 1;
+                            }
+                            catch (Throwable throwable)
+                            {
+                                failures += 1;
+                                if (flow.failOnThrowable(throwable))
+                                {
+                                    reports += 1;
+                                }
+                            }
+                        }
+                    }
+                    finally
+                    {
+                        executed[thread] = done;
+                        failed[thread] = failures;
+                        reported[thread] = reports;
+                    }
+                }, "asyncunit-stress-" + idx);
+                workers[idx].start();
+            }
+            ready.await();
+            start[0] = System.nanoTime();
+            gate.countDown();
+            for (Thread worker : workers)
+            {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - start[0];
+            StressReport report = new StressReport(executed, failed, elapsed, null);
+            try
+            {
+                Report result = flow.awaitReport(
+                    1, TimeUnit.SECONDS, (int) Math.min(Integer.MAX_VALUE, Arrays.stream(reported).sum())
+                );
+                return new StressReport(executed, failed, elapsed, result);
+            }
+            catch (Throwable throwable)
+            {
+                throwable.addSuppressed(new AssertionError("Stress run: " + report));
+                throw throwable;
+            }
+        }
+    }
+
+    /**
+     * Explorer of thread interleavings. Runs a set of actions under a cooperative scheduler, one thread at a time, and
+     * switches threads only at yield points: the start and the end of every prepared execution and explicit
+     * {@link AsyncFlow#yieldPoint()} calls in the code under test. Every schedule starts from a fresh state given by
+     * setup, and its seed determines the whole interleaving, so a failing schedule can be replayed.
+     * <p>
+     * Schedules are explored in parallel. By default every yield point picks a random thread. With a preemption bound
+     * the running thread keeps running except for at most the given number of preemptions, which finds most races with
+     * far fewer schedules.
+     *
+     * @author Vedran Vatavuk
+     */
+    public static class Explorer
+    {
+        /**
+         * Period without progress after which a schedule is considered blocked, in milliseconds.
+         */
+        private static final long BLOCKED = 1000;
+
+        private final int schedules;
+
+        private final int preemptions;
+
+        private final int parallelism;
+
+        private final long seed;
+
+        /**
+         * Ctor.
+         *
+         * @param schedules Number of schedules to explore
+         */
+        public Explorer(int schedules)
+        {
+            this(schedules, -1, Runtime.getRuntime().availableProcessors(), System.nanoTime());
+        }
+
+        private Explorer(int schedules, int preemptions, int parallelism, long seed)
+        {
+            this.schedules = schedules;
+            this.preemptions = preemptions;
+            this.parallelism = parallelism;
+            this.seed = seed;
+        }
+
+        /**
+         * Creates explorer which preempts running thread at most given number of times per schedule.
+         *
+         * @param bound Maximum number of preemptions
+         * @return Explorer
+         */
+        public final AsyncFlow.Explorer withPreemptionBound(int bound)
+        {
+            return new AsyncFlow.Explorer(schedules, bound, parallelism, seed);
+        }
+
+        /**
+         * Creates explorer which runs given number of schedules at the same time.
+         *
+         * @param threads Number of schedules running at the same time
+         * @return Explorer
+         */
+        public final AsyncFlow.Explorer withParallelism(int threads)
+        {
+            return new AsyncFlow.Explorer(schedules, preemptions, threads, seed);
+        }
+
+        /**
+         * Creates explorer which derives seeds of schedules from a given seed, so the whole exploration repeats.
+         *
+         * @param base Base seed
+         * @return Explorer
+         */
+        public final AsyncFlow.Explorer withSeed(long base)
+        {
+            return new AsyncFlow.Explorer(schedules, preemptions, parallelism, base);
+        }
+
+        /**
+         * Explores schedules until all of them pass or one of them fails. Failure of the first failed schedule is
+         * rethrown with its seed and the exploration report attached as suppressed AssertionError.
+         *
+         * @param setup   Fresh state for every schedule
+         * @param actions Actions running concurrently on the state
+         * @param check   Check of the state after all actions finished
+         * @param <S>     S
+         * @return Exploration report
+         * @throws InterruptedException If interrupted
+         */
+        public final <S> ExplorationReport explore(Supplier<? extends S> setup, List<Consumer<? super S>> actions,
+            Consumer<? super S> check) throws InterruptedException
+        {
+            AtomicInteger next = new AtomicInteger();
+            AtomicLong explored = new AtomicLong();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Queue<Long> failed = new ConcurrentLinkedQueue<>();
+            long[] first = new long[1];
+            Thread[] workers = new Thread[Math.max(1, Math.min(parallelism, schedules))];
+            long start = System.nanoTime();
+            Schedule.EXPLORING.incrementAndGet();
+            try
+            {
+                for (int idx = 0; idx < workers.length; idx++)
+                {
+                    workers[idx] = new Thread(() -> {
+                        int index = next.getAndIncrement();
+                        while (index < schedules && failure.get() == null && !Thread.currentThread().isInterrupted())
+                        {
+                            long current = seed(index);
+                            Throwable error = attempt(current, setup, actions, check);
+                            explored.incrementAndGet();
+                            if (error != null)
+                            {
+                                failed.add(current);
+                                if (failure.compareAndSet(null, error))
+                                {
+                                    first[0] = current;
+                                }
+                            }
+                            index = next.getAndIncrement();
+                        }
+                    }, "asyncunit-explorer-" + idx);
+                    workers[idx].start();
+                }
+                for (Thread worker : workers)
+                {
+                    worker.join();
+                }
+            }
+            finally
+            {
+                Schedule.EXPLORING.decrementAndGet();
+            }
+            ExplorationReport report = new ExplorationReport(
+                explored.get(), failed.stream().mapToLong(Long::longValue).toArray(), System.nanoTime() - start
+            );
+            Throwable error = failure.get();
+            if (error != null)
+            {
+                error.addSuppressed(
+                    new AssertionError(
+                        String.format(
+                            "Interleaving with seed %d failed, replay it with Explorer.replay on an explorer %s. %s",
+                            first[0], bound(), report
+                        )
+                    )
+                );
+                sneakyThrow(error);
+            }
+            return report;
+        }
+
+        /**
+         * Replays a single schedule with a given seed and rethrows its failure. Schedule is replayed only on an explorer
+         * with the same preemption bound as the one that explored it.
+         *
+         * @param seed    Seed of the schedule
+         * @param setup   Fresh state of the schedule
+         * @param actions Actions running concurrently on the state
+         * @param check   Check of the state after all actions finished
+         * @param <S>     S
+         * @throws InterruptedException If interrupted
+         */
+        public final <S> void replay(long seed, Supplier<? extends S> setup, List<Consumer<? super S>> actions,
+            Consumer<? super S> check) throws InterruptedException
+        {
+            Schedule.EXPLORING.incrementAndGet();
+            try
+            {
+                Throwable error = attempt(seed, setup, actions, check);
+                if (error != null)
+                {
+                    sneakyThrow(error);
+                }
+            }
+            finally
+            {
+                Schedule.EXPLORING.decrementAndGet();
+            }
+        }
+
+        /**
+         * Runs a single schedule.
+         *
+         * @param current Seed of the schedule
+         * @param setup   Fresh state of the schedule
+         * @param actions Actions running concurrently on the state
+         * @param check   Check of the state after all actions finished
+         * @param <S>     S
+         * @return Failure of the schedule or null
+         */
+        private <S> Throwable attempt(long current, Supplier<? extends S> setup, List<Consumer<? super S>> actions,
+            Consumer<? super S> check)
+        {
+            try
+            {
+                S state = setup.get();
+                Schedule schedule = new Schedule(current, preemptions);
+                AsyncFlow.Single flow = new AsyncFlow.Single().with(schedule);
+                Runnable[] prepared = new Runnable[actions.size()];
+                for (int idx = 0; idx < prepared.length; idx++)
+                {
+                    Consumer<? super S> action = actions.get(idx);
+                    prepared[idx] = flow.prepare(() -> action.accept(state));
+                }
+                if (!schedule.run(prepared, BLOCKED, TimeUnit.MILLISECONDS))
+                {
+                    return new AssertionError(
+                        String.format(
+                            "Schedule with seed %d made no progress for %d ms, "
+                                + "a thread blocked outside of yield points",
+                            current, BLOCKED
+                        )
+                    );
+                }
+                Throwable thrown = schedule.failure();
+                if (thrown != null)
+                {
+                    return thrown;
+                }
+                flow.await(BLOCKED, prepared.length);
+                check.accept(state);
+                return null;
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                return exception;
+            }
+            catch (Throwable throwable)
+            {
+                return throwable;
+            }
+        }
+
+        /**
+         * Preemption bound of this explorer, as a replaying explorer must be configured.
+         *
+         * @return Description of the bound
+         */
+        private String bound()
+        {
+            if (preemptions < 0)
+            {
+                return "without preemption bound";
+            }
+            return String.format("withPreemptionBound(%d)", preemptions);
+        }
+
+        /**
+         * Seed of a schedule derived from the base seed.
+         *
+         * @param index Index of the schedule
+         * @return Seed
+         */
+        private long seed(int index)
+        {
+            long mixed = seed + index * 0x9E3779B97F4A7C15L;
+            mixed = (mixed ^ (mixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+            mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+            return mixed ^ (mixed >>> 31);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <E extends Throwable> void sneakyThrow(Throwable e) throws E
+        {
+            throw (E) e;
         }
     }
-}
\ No newline at end of file
+}
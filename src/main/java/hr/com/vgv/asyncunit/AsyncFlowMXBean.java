@@ -0,0 +1,25 @@
+package hr.com.vgv.asyncunit;
+
+/**
+ * Management interface of async flows, registered in the platform MBean server as
+ * {@code hr.com.vgv.asyncunit:type=AsyncFlow}. Shows from outside the JVM, e.g. in JConsole, what a stalled test is
+ * waiting on.
+ *
+ * @author Vedran Vatavuk
+ */
+public interface AsyncFlowMXBean
+{
+    /**
+     * Number of flows registered through static AsyncFlow methods.
+     *
+     * @return Number of flows
+     */
+    int getRegistered();
+
+    /**
+     * State of every live flow results.
+     *
+     * @return Flow states
+     */
+    FlowState[] getFlows();
+}
@@ -0,0 +1,134 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Named checkpoints of a single flow, e.g. "ingested", "indexed" and "flushed" stages of a pipeline. Every checkpoint
+ * counts its executions cumulatively and can be awaited by any number of threads at the same time, each waiting for its
+ * own number of executions.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+final class Checkpoints
+{
+    private final Map<String, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Fetch checkpoint with a given name or create it if it doesn't exist.
+     *
+     * @param name Checkpoint name
+     * @return Checkpoint
+     */
+    Checkpoint get(String name)
+    {
+        return checkpoints.computeIfAbsent(name, Checkpoint::new);
+    }
+
+    /**
+     * Named execution counter. Awaiting threads are notified only when the count reaches the nearest awaited target.
+     */
+    static final class Checkpoint
+    {
+        private final String name;
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private volatile long nearest = Long.MAX_VALUE;
+
+        Checkpoint(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Signals execution.
+         *
+         * @param throwable Failure or null if execution succeeded
+         */
+        void arrive(Throwable throwable)
+        {
+            if (throwable != null)
+            {
+                failure.compareAndSet(null, throwable);
+            }
+            if (count.incrementAndGet() >= nearest)
+            {
+                synchronized (this)
+                {
+                    nearest = Long.MAX_VALUE;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Waits until checkpoint is reached given number of times in total. Raises AssertionError after period expires.
+         * Period of zero means waiting until interrupted.
+         *
+         * @param period   Time period
+         * @param timeUnit Time unit
+         * @param times    Number of executions
+         * @throws InterruptedException If interrupted
+         */
+        void await(long period, TimeUnit timeUnit, int times) throws InterruptedException
+        {
+            long deadline = System.nanoTime() + timeUnit.toNanos(period);
+            synchronized (this)
+            {
+                while (count.get() < times)
+                {
+                    nearest = Math.min(nearest, times);
+                    if (count.get() >= times)
+                    {
+                        break;
+                    }
+                    if (period == 0)
+                    {
+                        wait();
+                    }
+                    else
+                    {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0)
+                        {
+                            throwOnError();
+                            throw new AssertionError(
+                                String.format(
+                                    "Number of %s executions was %d instead of %d", name, count.get(), times
+                                )
+                            );
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                }
+            }
+            throwOnError();
+        }
+
+        /**
+         * Throws the first failure of this checkpoint. Failure is kept, so every awaiting thread receives it.
+         */
+        private void throwOnError()
+        {
+            Throwable error = failure.get();
+            if (error != null)
+            {
+                sneakyThrow(error);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <E extends Throwable> void sneakyThrow(Throwable e) throws E
+        {
+            throw (E) e;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Achieved concurrency of flow executions. A shared counter tracks executions in flight and keeps its peak. Average
+ * concurrency is weighted by time: total duration of all executions divided by the period from the first start to the
+ * last finish, which is the mean number of executions in flight over that period.
+ * <p>
+ * A concurrency test only exercises races if executions actually overlap. Asserting on achieved concurrency catches
+ * tests that quietly serialize, e.g. on a lock or a single threaded pool.
+ * <p>
+ * Example of usage:
+ * <p>
+ * AsyncFlow.Single flow = new AsyncFlow.Single().with(new Concurrency());
+ * ...
+ * flow.awaitReport(1000, 100).assertMaxConcurrencyAtLeast(8);
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class Concurrency implements Probe
+{
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicInteger peak = new AtomicInteger();
+
+    private final LongAdder busy = new LongAdder();
+
+    private final AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong last = new AtomicLong(Long.MIN_VALUE);
+
+    @Override
+    public long enter()
+    {
+        long now = System.nanoTime();
+        int current = running.incrementAndGet();
+        int max = peak.get();
+        while (current > max && !peak.compareAndSet(max, current))
+        {
+            max = peak.get();
+        }
+        long start = first.get();
+        while (now < start && !first.compareAndSet(start, now))
+        {
+            start = first.get();
+        }
+        return now;
+    }
+
+    @Override
+    public void exit(long token)
+    {
+        long now = System.nanoTime();
+        running.decrementAndGet();
+        busy.add(now - token);
+        long end = last.get();
+        while (now > end && !last.compareAndSet(end, now))
+        {
+            end = last.get();
+        }
+    }
+
+    /**
+     * Highest number of executions that were in flight at the same time.
+     *
+     * @return Maximum concurrency
+     */
+    public int max()
+    {
+        return peak.get();
+    }
+
+    /**
+     * Time weighted average number of executions in flight, from the first start to the last finish.
+     *
+     * @return Average concurrency, or zero if nothing finished
+     */
+    public double average()
+    {
+        long end = last.get();
+        long span = end - first.get();
+        if (end == Long.MIN_VALUE || span <= 0)
+        {
+            return 0;
+        }
+        return (double) busy.sum() / span;
+    }
+
+    /**
+     * Raises AssertionError if fewer than a given number of executions were ever in flight at the same time.
+     *
+     * @param expected Minimal maximum concurrency
+     */
+    public void assertMaxAtLeast(int expected)
+    {
+        int actual = max();
+        if (actual < expected)
+        {
+            throw new AssertionError(
+                String.format(
+                    "Maximum concurrency was %d instead of at least %d, average concurrency was %.2f",
+                    actual, expected, average()
+                )
+            );
+        }
+    }
+
+    /**
+     * Raises AssertionError if any two executions were in flight at the same time.
+     */
+    public void assertNeverConcurrent()
+    {
+        int actual = max();
+        if (actual > 1)
+        {
+            throw new AssertionError(
+                String.format("Executions overlapped, maximum concurrency was %d", actual)
+            );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Concurrency: max %d, average %.2f", max(), average());
+    }
+}
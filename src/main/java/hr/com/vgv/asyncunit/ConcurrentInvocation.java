@@ -0,0 +1,55 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Runs a JUnit 5 test method concurrently as a stress test. Test body is prepared by a flow of its own and invoked
+ * from a number of threads, first for warm-up and then for measured invocations. Throughput and latency of measured
+ * invocations are published to the test report.
+ * <p>
+ * Example of usage:
+ * <p>
+ * &#64;ConcurrentInvocation(threads = 16, invocations = 100_000, warmup = 10_000)
+ * public void putsConcurrently() {
+ * cache.put(key(), value());
+ * }
+ * <p>
+ * Every test gets its own flow and its own threads, so tests annotated this way can run in parallel.
+ *
+ * @author Vedran Vatavuk
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.ANNOTATION_TYPE})
+@Test
+@ExtendWith(ConcurrentInvocationExtension.class)
+public @interface ConcurrentInvocation
+{
+    /**
+     * Number of threads invoking the test body.
+     *
+     * @return Threads
+     */
+    int threads() default 4;
+
+    /**
+     * Number of measured invocations in total.
+     *
+     * @return Invocations
+     */
+    int invocations() default 10_000;
+
+    /**
+     * Number of warm-up invocations in total, run before measured invocations and left out of the report.
+     *
+     * @return Invocations
+     */
+    int warmup() default 0;
+}
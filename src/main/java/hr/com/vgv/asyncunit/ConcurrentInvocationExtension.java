@@ -0,0 +1,92 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.ReflectionSupport;
+
+/**
+ * JUnit 5 extension behind {@link ConcurrentInvocation}. Replaces the single invocation of a test method with a stress
+ * run of its body. Warm-up and measured invocations run on separate flows and threads, both created for the test alone
+ * instead of being looked up per thread like static AsyncFlow methods.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class ConcurrentInvocationExtension implements InvocationInterceptor
+{
+    @Override
+    public void interceptTestMethod(
+        Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext,
+        ExtensionContext extensionContext) throws Throwable
+    {
+        Method method = invocationContext.getExecutable();
+        Optional<ConcurrentInvocation> settings = AnnotationSupport.findAnnotation(method, ConcurrentInvocation.class);
+        if (!settings.isPresent())
+        {
+            invocation.proceed();
+            return;
+        }
+        invocation.skip();
+        Object target = invocationContext.getTarget().orElse(null);
+        List<Object> arguments = invocationContext.getArguments();
+        Runnable body = () -> ReflectionSupport.invokeMethod(method, target, arguments.toArray());
+        StressReport report = run(settings.get(), body);
+        extensionContext.publishReportEntry(entries(report));
+    }
+
+    /**
+     * Runs warm-up and measured invocations of the test body.
+     *
+     * @param settings Settings of the test
+     * @param body     Test body
+     * @return Report of measured invocations
+     * @throws InterruptedException If interrupted
+     */
+    private static StressReport run(ConcurrentInvocation settings, Runnable body) throws InterruptedException
+    {
+        if (settings.threads() < 1 || settings.invocations() < 0 || settings.warmup() < 0)
+        {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Invalid concurrent invocation of %d invocations and %d warm-up invocations on %d threads",
+                    settings.invocations(), settings.warmup(), settings.threads()
+                )
+            );
+        }
+        if (settings.warmup() > 0)
+        {
+            new AsyncFlow.Stress(settings.threads()).run(settings.warmup(), body);
+        }
+        return new AsyncFlow.Stress(
+            new AsyncFlow.Single(new Results.Striped()).with(new Latencies()), settings.threads()
+        ).run(settings.invocations(), body);
+    }
+
+    /**
+     * Report entries of measured invocations.
+     *
+     * @param report Report of measured invocations
+     * @return Report entries
+     */
+    private static Map<String, String> entries(StressReport report)
+    {
+        Latencies latencies = report.flow().probe(Latencies.class);
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("invocations", String.valueOf(report.invocations()));
+        entries.put("failures", String.valueOf(report.failures()));
+        entries.put("elapsed [ms]", String.valueOf(report.elapsed(TimeUnit.MILLISECONDS)));
+        entries.put("throughput [ops/s]", String.format("%.0f", report.throughput()));
+        entries.put("latency p50 [us]", String.valueOf(latencies.percentile(0.5, TimeUnit.MICROSECONDS)));
+        entries.put("latency p99 [us]", String.valueOf(latencies.percentile(0.99, TimeUnit.MICROSECONDS)));
+        entries.put("latency max [us]", String.valueOf(latencies.max(TimeUnit.MICROSECONDS)));
+        return entries;
+    }
+}
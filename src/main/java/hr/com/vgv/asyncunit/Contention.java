@@ -0,0 +1,463 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock contention of flow executions. Blocked and waited counts and times of the worker thread are sampled when an
+ * execution starts and when it finishes, and their differences are summed for the whole flow. Threads running an
+ * execution are also sampled periodically on a daemon thread shared by contention probes, apart from the timer of
+ * pending awaits, and every monitor or lock they are blocked or
+ * waiting on is counted, which gives the most contended monitors of the flow.
+ * <p>
+ * Every worker thread registers with the probe on its first execution and only flags its own registration while it
+ * runs an execution, so executions don't contend on the probe. Sampling starts with the first execution and stops
+ * when the flow is awaited or the probe is closed. It starts again with the next execution.
+ * <p>
+ * Example of usage:
+ * <p>
+ * AsyncFlow.Single flow = new AsyncFlow.Single().with(new Contention());
+ * ...
+ * System.out.println(flow.awaitReport(1000, 100));
+ * <p>
+ * Times are measured only on JVMs which support thread contention monitoring, which is enabled on construction.
+ * Execution frames are reused, but the JVM allocates a thread info on every read of the counters. Probes are exited in
+ * reverse order, so when combined with {@link Allocations} add this probe first, e.g.
+ * {@code flow.with(new Contention()).with(new Allocations())}, to keep its reads out of the measured allocations.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class Contention implements Probe, AutoCloseable
+{
+    /**
+     * Default sampling period in milliseconds.
+     */
+    private static final long PERIOD = 5;
+
+    /**
+     * Number of monitors listed in the summary.
+     */
+    private static final int TOP = 5;
+
+    /**
+     * Sampling thread shared by all contention probes.
+     */
+    private static final ScheduledExecutorService SAMPLING = sampler();
+
+    private final ThreadMXBean threads;
+
+    private final long period;
+
+    private final Queue<Worker> workers = new ConcurrentLinkedQueue<>();
+
+    private final ThreadLocal<Worker> worker = ThreadLocal.withInitial(this::register);
+
+    private final LongAdder executions = new LongAdder();
+
+    private final LongAdder blocked = new LongAdder();
+
+    private final LongAdder blockedTime = new LongAdder();
+
+    private final LongAdder waited = new LongAdder();
+
+    private final LongAdder waitedTime = new LongAdder();
+
+    private final Map<String, LongAdder> monitors = new ConcurrentHashMap<>();
+
+    private volatile boolean sampling;
+
+    private ScheduledFuture<?> sampler;
+
+    public Contention()
+    {
+        this(PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param period Period of monitor sampling
+     * @param unit   Time unit
+     */
+    public Contention(long period, TimeUnit unit)
+    {
+        this.threads = ManagementFactory.getThreadMXBean();
+        this.period = unit.toNanos(period);
+        if (threads.isThreadContentionMonitoringSupported() && !threads.isThreadContentionMonitoringEnabled())
+        {
+            threads.setThreadContentionMonitoringEnabled(true);
+        }
+    }
+
+    @Override
+    public long enter()
+    {
+        if (!sampling)
+        {
+            start();
+        }
+        Worker current = worker.get();
+        if (current.depth == 0)
+        {
+            current.running = true;
+        }
+        snapshot(current.push());
+        return 0;
+    }
+
+    @Override
+    public void exit(long token)
+    {
+        Worker current = worker.get();
+        long[] after = snapshot(current.after);
+        long[] before = current.pop();
+        if (current.depth == 0)
+        {
+            current.running = false;
+        }
+        executions.increment();
+        blocked.add(after[0] - before[0]);
+        blockedTime.add(after[1] - before[1]);
+        waited.add(after[2] - before[2]);
+        waitedTime.add(after[3] - before[3]);
+    }
+
+    /**
+     * Stops sampling when the flow is awaited.
+     */
+    @Override
+    public void awaited()
+    {
+        close();
+    }
+
+    /**
+     * Stops sampling of monitors. Sampling starts again with the next execution.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (sampler != null)
+        {
+            sampler.cancel(false);
+            sampler = null;
+            sampling = false;
+        }
+    }
+
+    /**
+     * Number of times executions blocked to enter a monitor.
+     *
+     * @return Count
+     */
+    public long blockedCount()
+    {
+        return blocked.sum();
+    }
+
+    /**
+     * Total time executions were blocked to enter a monitor. Zero if contention monitoring is not supported.
+     *
+     * @param unit Time unit
+     * @return Time
+     */
+    public long blockedTime(TimeUnit unit)
+    {
+        return unit.convert(blockedTime.sum(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Number of times executions waited, e.g. on a lock, condition or sleep.
+     *
+     * @return Count
+     */
+    public long waitedCount()
+    {
+        return waited.sum();
+    }
+
+    /**
+     * Total time executions waited. Zero if contention monitoring is not supported.
+     *
+     * @param unit Time unit
+     * @return Time
+     */
+    public long waitedTime(TimeUnit unit)
+    {
+        return unit.convert(waitedTime.sum(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Monitors and locks executions were found blocked or waiting on, with number of samples, most contended first.
+     *
+     * @return Number of samples per monitor
+     */
+    public Map<String, Long> monitors()
+    {
+        List<Map.Entry<String, LongAdder>> entries = new ArrayList<>(monitors.entrySet());
+        entries.sort((left, right) -> Long.compare(right.getValue().sum(), left.getValue().sum()));
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry : entries)
+        {
+            sorted.put(entry.getKey(), entry.getValue().sum());
+        }
+        return sorted;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder summary = new StringBuilder(
+            String.format(
+                "Contention of %d executions: blocked %d times for %d ms, waited %d times for %d ms",
+                executions.sum(), blockedCount(), blockedTime(TimeUnit.MILLISECONDS), waitedCount(),
+                waitedTime(TimeUnit.MILLISECONDS)
+            )
+        );
+        int listed = 0;
+        for (Map.Entry<String, Long> monitor : monitors().entrySet())
+        {
+            if (listed == TOP)
+            {
+                break;
+            }
+            summary.append(String.format("%n  %d samples %s", monitor.getValue(), monitor.getKey()));
+            listed += 1;
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Counts monitors that threads running an execution are blocked or waiting on.
+     */
+    void sample()
+    {
+        long[] ids = new long[0];
+        int size = 0;
+        Iterator<Worker> iterator = workers.iterator();
+        while (iterator.hasNext())
+        {
+            Worker current = iterator.next();
+            if (!current.alive())
+            {
+                iterator.remove();
+            }
+            else if (current.running)
+            {
+                if (size == ids.length)
+                {
+                    ids = Arrays.copyOf(ids, Math.max(4, size * 2));
+                }
+                ids[size] = current.id;
+                size += 1;
+            }
+        }
+        if (size == 0)
+        {
+            return;
+        }
+        for (ThreadInfo info : threads.getThreadInfo(Arrays.copyOf(ids, size), 0))
+        {
+            if (info != null && info.getLockName() != null)
+            {
+                monitors.computeIfAbsent(
+                    String.format("%s on %s", info.getThreadState(), info.getLockName()), key -> new LongAdder()
+                ).increment();
+            }
+        }
+    }
+
+    /**
+     * Check if monitors are being sampled.
+     *
+     * @return Boolean
+     */
+    boolean sampling()
+    {
+        return sampling;
+    }
+
+    /**
+     * Starts sampling of monitors unless it's already running.
+     */
+    private synchronized void start()
+    {
+        if (sampler == null)
+        {
+            sampler = Sampler.start(this, period);
+            sampling = true;
+        }
+    }
+
+    /**
+     * Registers the current thread as a worker of this probe.
+     *
+     * @return Worker
+     */
+    private Worker register()
+    {
+        Worker registered = new Worker(Thread.currentThread());
+        workers.add(registered);
+        return registered;
+    }
+
+    /**
+     * Reads blocked count, blocked time, waited count and waited time of the current thread into a given frame.
+     *
+     * @param frame Frame
+     * @return Frame
+     */
+    private long[] snapshot(long[] frame)
+    {
+        ThreadInfo info = threads.getThreadInfo(Thread.currentThread().getId());
+        frame[0] = info.getBlockedCount();
+        frame[1] = Math.max(0, info.getBlockedTime());
+        frame[2] = info.getWaitedCount();
+        frame[3] = Math.max(0, info.getWaitedTime());
+        return frame;
+    }
+
+    /**
+     * Creates sampling executor running on a single daemon thread.
+     *
+     * @return Executor
+     */
+    private static ScheduledExecutorService sampler()
+    {
+        ScheduledThreadPoolExecutor sampling = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "asyncunit-contention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampling.setRemoveOnCancelPolicy(true);
+        return sampling;
+    }
+
+    /**
+     * Periodic sampling task. Holds the probe weakly and cancels itself once the probe is garbage collected.
+     */
+    private static final class Sampler implements Runnable
+    {
+        private final WeakReference<Contention> probe;
+
+        private volatile ScheduledFuture<?> future;
+
+        private Sampler(Contention probe)
+        {
+            this.probe = new WeakReference<>(probe);
+        }
+
+        /**
+         * Starts sampling of a probe.
+         *
+         * @param probe  Probe
+         * @param period Sampling period in nanoseconds
+         * @return Future cancelled to stop sampling
+         */
+        static ScheduledFuture<?> start(Contention probe, long period)
+        {
+            Sampler sampler = new Sampler(probe);
+            sampler.future = SAMPLING.scheduleWithFixedDelay(sampler, period, period, TimeUnit.NANOSECONDS);
+            return sampler.future;
+        }
+
+        @Override
+        public void run()
+        {
+            Contention contention = probe.get();
+            if (contention != null)
+            {
+                contention.sample();
+            }
+            else if (future != null)
+            {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Worker thread registered with the probe. Only the worker itself writes its execution frames and running flag.
+     * Frames are allocated once per nesting depth and reused by later executions.
+     */
+    private static final class Worker
+    {
+        private final WeakReference<Thread> thread;
+
+        private final long id;
+
+        private final long[] after = new long[4];
+
+        private long[][] frames = new long[1][4];
+
+        private int depth;
+
+        private volatile boolean running;
+
+        private Worker(Thread thread)
+        {
+            this.thread = new WeakReference<>(thread);
+            this.id = thread.getId();
+        }
+
+        /**
+         * Frame of a started execution.
+         *
+         * @return Frame
+         */
+        long[] push()
+        {
+            if (depth == frames.length)
+            {
+                frames = Arrays.copyOf(frames, depth * 2);
+                for (int idx = depth; idx < frames.length; idx++)
+                {
+                    frames[idx] = new long[4];
+                }
+            }
+            long[] frame = frames[depth];
+            depth += 1;
+            return frame;
+        }
+
+        /**
+         * Frame of a finished execution.
+         *
+         * @return Frame
+         */
+        long[] pop()
+        {
+            depth -= 1;
+            return frames[depth];
+        }
+
+        /**
+         * Check if worker thread is still running.
+         *
+         * @return Boolean
+         */
+        boolean alive()
+        {
+            Thread current = thread.get();
+            return current != null && current.isAlive();
+        }
+    }
+}
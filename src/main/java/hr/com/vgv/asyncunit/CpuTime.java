@@ -0,0 +1,183 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CPU time used by every flow execution. Unlike latency, CPU time doesn't include time the worker thread spent
+ * blocked, waiting or descheduled, so it shows cost of the code under test itself. The first executions can be left
+ * out as warm-up, e.g. until lazy initialization and JIT compilation are done.
+ * <p>
+ * Example of usage:
+ * <p>
+ * AsyncFlow.Single flow = new AsyncFlow.Single().with(new CpuTime(10_000));
+ * ...
+ * flow.awaitReport(1000, 100_000).assertMeanCpuAtMost(20, TimeUnit.MICROSECONDS);
+ * <p>
+ * Resolution of thread CPU time depends on the operating system, so very short executions may be recorded as zero.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class CpuTime implements Probe
+{
+    private final ThreadMXBean threads;
+
+    private final long warmup;
+
+    private final AtomicLong started = new AtomicLong();
+
+    private final Histogram histogram = new Histogram();
+
+    public CpuTime()
+    {
+        this(0);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param warmup Number of first executions which are not recorded
+     */
+    public CpuTime(long warmup)
+    {
+        this.threads = threads();
+        this.warmup = warmup;
+    }
+
+    @Override
+    public long enter()
+    {
+        if (started.get() < warmup && started.getAndIncrement() < warmup)
+        {
+            return -1;
+        }
+        return threads.getCurrentThreadCpuTime();
+    }
+
+    @Override
+    public void exit(long token)
+    {
+        if (token >= 0)
+        {
+            histogram.record(threads.getCurrentThreadCpuTime() - token);
+        }
+    }
+
+    /**
+     * Number of recorded executions.
+     *
+     * @return Count
+     */
+    public long count()
+    {
+        return histogram.count();
+    }
+
+    /**
+     * Highest CPU time of a single execution.
+     *
+     * @param unit Time unit
+     * @return Maximum
+     */
+    public long max(TimeUnit unit)
+    {
+        return unit.convert(histogram.max(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Mean CPU time of an execution.
+     *
+     * @param unit Time unit
+     * @return Mean
+     */
+    public double mean(TimeUnit unit)
+    {
+        return histogram.mean() / unit.toNanos(1);
+    }
+
+    /**
+     * CPU time below or at which given fraction of executions fall.
+     *
+     * @param fraction Fraction between 0 and 1, e.g. 0.99 for 99th percentile
+     * @param unit     Time unit
+     * @return Percentile
+     */
+    public long percentile(double fraction, TimeUnit unit)
+    {
+        return unit.convert(histogram.percentile(fraction), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Raises AssertionError if mean CPU time of an execution is above the limit.
+     *
+     * @param limit Limit
+     * @param unit  Time unit of limit
+     */
+    public void assertMeanAtMost(long limit, TimeUnit unit)
+    {
+        double actual = histogram.mean();
+        if (actual > unit.toNanos(limit))
+        {
+            throw new AssertionError(
+                String.format(
+                    "Mean CPU time was %.0f ns instead of at most %d %s. %s",
+                    actual, limit, unit.name().toLowerCase(), this
+                )
+            );
+        }
+    }
+
+    /**
+     * Raises AssertionError if given percentile of CPU time is above the limit.
+     *
+     * @param fraction Fraction between 0 and 1, e.g. 0.99 for 99th percentile
+     * @param limit    Limit
+     * @param unit     Time unit of limit
+     */
+    public void assertPercentileAtMost(double fraction, long limit, TimeUnit unit)
+    {
+        long actual = histogram.percentile(fraction);
+        if (actual > unit.toNanos(limit))
+        {
+            throw new AssertionError(
+                String.format(
+                    "CPU time percentile %s was %d ns instead of at most %d %s. %s",
+                    fraction * 100, actual, limit, unit.name().toLowerCase(), this
+                )
+            );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "CPU time in ns of %d executions: mean %.0f, p50 %d, p90 %d, p99 %d, max %d",
+            count(), histogram.mean(), histogram.percentile(0.5), histogram.percentile(0.9),
+            histogram.percentile(0.99), histogram.max()
+        );
+    }
+
+    /**
+     * Fetch thread MXBean with CPU time measurement enabled.
+     *
+     * @return Thread MXBean
+     */
+    private static ThreadMXBean threads()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isCurrentThreadCpuTimeSupported())
+        {
+            throw new IllegalStateException("Thread CPU time is not supported by this JVM");
+        }
+        if (!threads.isThreadCpuTimeEnabled())
+        {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        return threads;
+    }
+}
@@ -1,7 +1,8 @@
 package hr.com.vgv.asyncunit;
 
 /**
- * Class derived from a base class.
+ * Class derived from a base class. Thin front for {@link ThrowableMatcher}, which should be preferred when the same
+ * base classes are matched repeatedly.
  */
 public class DerivedClass
 {
@@ -19,51 +20,12 @@ public class DerivedClass
     }
 
     /**
-     * Check if this class is related to a given class.
+     * Check if this class is related to a given class. Classes are related if this class is equal to, extends or
+     * implements the given class anywhere in its hierarchy.
      * @param cls Class
      * @return Boolean Boolean
      */
     public final boolean isRelatedTo(final Class<?> cls) {
-        final int level;
-        if (cls.equals(this.derived)) {
-            level = 0;
-        } else {
-            level = this.calculateLevel(cls);
-        }
-        return level >= 0;
-    }
-
-    /**
-     * Calculates inheritance level. The number of superclasses between base and derived class.
-     *
-     * <p>This class is thread safe.
-     *
-     * <p>Result interpretation:
-     * <ul>
-     *     <li>{@link Integer#MIN_VALUE} -&gt; classes are not related.
-     *     (ex. matching FileNotFoundException with RuntimeException);
-     *     <li>0 -&gt; classes are identical. (ex. matching IOException with
-     *     IOException);
-     *     <li>1 -&gt; single level inheritance. (ex. matching
-     *     FileNotFoundException with IOException);
-     *     <li>2 -&gt; two inheritance levels. (ex. matching
-     *     FileNotFoundException with Exception).
-     * </ul>
-     *
-     * @return Integer Level
-     */
-    private int calculateLevel(Class<?> base) {
-        int level = Integer.MIN_VALUE;
-        Class<?> sclass = this.derived.getSuperclass();
-        int idx = 0;
-        while (!sclass.equals(Object.class)) {
-            idx += 1;
-            if (sclass.equals(base)) {
-                level = idx;
-                break;
-            }
-            sclass = sclass.getSuperclass();
-        }
-        return level;
+        return ThrowableMatcher.related(cls, this.derived);
     }
 }
@@ -0,0 +1,83 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report of an interleaving exploration. Gives number of explored schedules, exploration speed and seeds of failed
+ * schedules, which can be replayed one by one.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class ExplorationReport
+{
+    private final long schedules;
+
+    private final long[] failures;
+
+    private final long elapsed;
+
+    /**
+     * Ctor.
+     *
+     * @param schedules Number of explored schedules
+     * @param failures  Seeds of failed schedules
+     * @param elapsed   Elapsed time in nanoseconds
+     */
+    ExplorationReport(long schedules, long[] failures, long elapsed)
+    {
+        this.schedules = schedules;
+        this.failures = failures;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Number of explored schedules.
+     *
+     * @return Schedules
+     */
+    public long schedules()
+    {
+        return schedules;
+    }
+
+    /**
+     * Seeds of failed schedules.
+     *
+     * @return Seeds
+     */
+    public long[] failures()
+    {
+        return failures.clone();
+    }
+
+    /**
+     * Time elapsed while exploring.
+     *
+     * @param unit Time unit
+     * @return Elapsed time
+     */
+    public long elapsed(TimeUnit unit)
+    {
+        return unit.convert(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Schedules explored per second.
+     *
+     * @return Throughput
+     */
+    public double throughput()
+    {
+        return schedules * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsed);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "%d schedules in %d ms (%.0f schedules/s), %d failed, seeds %s",
+            schedules, elapsed(TimeUnit.MILLISECONDS), throughput(), failures.length, Arrays.toString(failures)
+        );
+    }
+}
@@ -0,0 +1,269 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded store of flow failures. The first failures are kept in full. Failures beyond that are only counted by
+ * exception type and first stack frame in a fixed-size table, so a flow that fails millions of times doesn't hold
+ * millions of throwables on the heap.
+ * <p>
+ * Drained error is the failure itself if the flow failed once. If the flow failed more than once, drained error is a
+ * new AssertionError with a summary of all failures, caused by the first failure and with the other kept failures
+ * attached as suppressed. Failures thrown by the flow are never modified.
+ * <p>
+ * A failure is published in its slot before it is counted, so a concurrent drain never sees a counted failure
+ * missing. Drain swaps in a fresh store, failures added while it runs go to the next drain.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class Failures
+{
+    /**
+     * Default number of failures kept in full.
+     */
+    public static final int SAMPLES = 16;
+
+    /**
+     * Number of aggregated failure kinds.
+     */
+    private static final int KINDS = 64;
+
+    private final int samples;
+
+    private final AtomicReference<Store> store;
+
+    public Failures()
+    {
+        this(SAMPLES);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param samples Number of failures kept in full
+     */
+    public Failures(int samples)
+    {
+        if (samples < 1)
+        {
+            throw new IllegalArgumentException("At least one failure must be kept");
+        }
+        this.samples = samples;
+        this.store = new AtomicReference<>(new Store(samples));
+    }
+
+    /**
+     * Adds failure.
+     *
+     * @param throwable Failure
+     */
+    public void add(Throwable throwable)
+    {
+        store.get().add(throwable);
+    }
+
+    /**
+     * Check if there are no failures.
+     *
+     * @return Boolean
+     */
+    public boolean isEmpty()
+    {
+        return count() == 0;
+    }
+
+    /**
+     * Number of failures added.
+     *
+     * @return Count
+     */
+    public long count()
+    {
+        return store.get().count.get();
+    }
+
+    /**
+     * Removes all failures and returns the error to be propagated.
+     *
+     * @return Single failure, summary error caused by the first failure or null if there were no failures
+     */
+    public Throwable drain()
+    {
+        return store.getAndSet(new Store(samples)).error();
+    }
+
+    /**
+     * Failures added between two drains.
+     */
+    private static final class Store
+    {
+        private final AtomicReferenceArray<Throwable> samples;
+
+        private final AtomicReferenceArray<Kind> kinds = new AtomicReferenceArray<>(KINDS);
+
+        private final AtomicLong claimed = new AtomicLong();
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong unclassified = new AtomicLong();
+
+        Store(int samples)
+        {
+            this.samples = new AtomicReferenceArray<>(samples);
+        }
+
+        /**
+         * Adds failure. Failure is kept or aggregated first and counted afterwards.
+         *
+         * @param throwable Failure
+         */
+        void add(Throwable throwable)
+        {
+            long idx = claimed.getAndIncrement();
+            if (idx < samples.length())
+            {
+                samples.set((int) idx, throwable);
+            }
+            else
+            {
+                aggregate(throwable);
+            }
+            count.incrementAndGet();
+        }
+
+        /**
+         * Error to be propagated.
+         *
+         * @return Single failure, summary error caused by the first failure or null if there were no failures
+         */
+        Throwable error()
+        {
+            long total = count.get();
+            int kept = (int) Math.min(total, samples.length());
+            Throwable first = null;
+            AssertionError error = null;
+            for (int idx = 0; idx < samples.length(); idx++)
+            {
+                Throwable sample = samples.get(idx);
+                if (sample == null)
+                {
+                    continue;
+                }
+                if (first == null)
+                {
+                    first = sample;
+                    if (total > 1)
+                    {
+                        error = new AssertionError(summary(total, kept), first);
+                    }
+                }
+                else if (error != null && sample != first)
+                {
+                    error.addSuppressed(sample);
+                }
+            }
+            if (error != null)
+            {
+                return error;
+            }
+            return first;
+        }
+
+        /**
+         * Counts failure by its type and first stack frame.
+         *
+         * @param throwable Failure
+         */
+        private void aggregate(Throwable throwable)
+        {
+            StackTraceElement[] trace = throwable.getStackTrace();
+            StackTraceElement frame = trace.length == 0 ? null : trace[0];
+            Class<?> type = throwable.getClass();
+            int start = (31 * type.hashCode() + (frame == null ? 0 : frame.hashCode())) & (KINDS - 1);
+            for (int probe = 0; probe < KINDS; probe++)
+            {
+                int idx = (start + probe) & (KINDS - 1);
+                Kind kind = kinds.get(idx);
+                if (kind == null)
+                {
+                    kind = new Kind(type, frame);
+                    if (!kinds.compareAndSet(idx, null, kind))
+                    {
+                        kind = kinds.get(idx);
+                    }
+                }
+                if (kind != null && kind.matches(type, frame))
+                {
+                    kind.count.incrementAndGet();
+                    return;
+                }
+            }
+            unclassified.incrementAndGet();
+        }
+
+        /**
+         * Summary of all failures.
+         *
+         * @param total Total number of failures
+         * @param kept  Number of failures kept in full
+         * @return Summary
+         */
+        private String summary(long total, int kept)
+        {
+            StringBuilder summary = new StringBuilder(
+                String.format("Flow failed %d times, first of %d kept failures is the cause", total, kept)
+            );
+            for (int idx = 0; idx < KINDS; idx++)
+            {
+                Kind kind = kinds.get(idx);
+                if (kind != null)
+                {
+                    summary.append(String.format("%n  %d x %s", kind.count.get(), kind));
+                }
+            }
+            long other = unclassified.get();
+            if (other > 0)
+            {
+                summary.append(String.format("%n  %d x other failures", other));
+            }
+            return summary.toString();
+        }
+    }
+
+    /**
+     * Kind of failure determined by its type and first stack frame.
+     */
+    private static final class Kind
+    {
+        private final Class<?> type;
+
+        private final StackTraceElement frame;
+
+        private final AtomicLong count = new AtomicLong();
+
+        Kind(Class<?> type, StackTraceElement frame)
+        {
+            this.type = type;
+            this.frame = frame;
+        }
+
+        boolean matches(Class<?> other, StackTraceElement location)
+        {
+            return type == other && (frame == null ? location == null : frame.equals(location));
+        }
+
+        @Override
+        public String toString()
+        {
+            if (frame == null)
+            {
+                return type.getName();
+            }
+            return String.format("%s at %s", type.getName(), frame);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package hr.com.vgv.asyncunit;
+
+/**
+ * Flight recorder events of flow executions and awaits. Java Flight Recorder is not available on Java 8, so this
+ * version records nothing. The Java 11 version in the multi-release jar emits JFR events.
+ *
+ * @author Vedran Vatavuk
+ */
+final class FlightRecorder
+{
+    private FlightRecorder()
+    {
+    }
+
+    /**
+     * Signals start of a prepared execution.
+     *
+     * @return Event in progress or null if events are not recorded
+     */
+    static Object executing()
+    {
+        return null;
+    }
+
+    /**
+     * Signals end of a prepared execution.
+     *
+     * @param event   Event returned on start
+     * @param failure Failure or null if execution succeeded
+     */
+    static void executed(Object event, Throwable failure)
+    {
+        // Nothing to record
+    }
+
+    /**
+     * Signals start of an await.
+     *
+     * @return Event in progress or null if events are not recorded
+     */
+    static Object awaiting()
+    {
+        return null;
+    }
+
+    /**
+     * Signals end of an await.
+     *
+     * @param event    Event returned on start
+     * @param expected Number of expected results
+     * @param received Number of received results
+     * @param failures Number of failures
+     */
+    static void awaited(Object event, int expected, long received, long failures)
+    {
+        // Nothing to record
+    }
+}
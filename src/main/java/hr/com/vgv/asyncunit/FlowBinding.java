@@ -0,0 +1,35 @@
+package hr.com.vgv.asyncunit;
+
+/**
+ * Binding of static flows to threads. Each thread has its own flow, threads don't inherit flows.
+ *
+ * <p>This class is versioned, Java 21 version lets virtual threads inherit flows.
+ *
+ * @author Vedran Vatavuk
+ */
+final class FlowBinding
+{
+    private FlowBinding()
+    {
+    }
+
+    /**
+     * Thread local holding flow entries.
+     *
+     * @return Thread local
+     */
+    static ThreadLocal<FlowRegistry.Entry> local()
+    {
+        return new ThreadLocal<>();
+    }
+
+    /**
+     * Check if the current thread uses inherited flows.
+     *
+     * @return Boolean
+     */
+    static boolean virtual()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,271 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Live metrics of flow results, shared by every flow reporting to the same results. Executions are counted in striped
+ * adders, so counting adds no contention between reporting threads. Executions reporting to checkpoints are counted
+ * apart from executions reporting to results. Metrics of all live results are exposed by the {@link AsyncFlowMXBean}
+ * registered on first use and are dropped once their results are garbage collected. Metrics are looked up in a
+ * concurrent map keyed weakly by results identity, so constructing flows takes no global lock.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+final class FlowMetrics
+{
+    /**
+     * Name of the registered MBean.
+     */
+    static final String MBEAN = "hr.com.vgv.asyncunit:type=AsyncFlow";
+
+    private static final Map<Key, FlowMetrics> FLOWS = new ConcurrentHashMap<>();
+
+    private static final ReferenceQueue<Results> COLLECTED = new ReferenceQueue<>();
+
+    private final String name;
+
+    private final LongAdder successes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder checkpoints = new LongAdder();
+
+    private final LongAdder waited = new LongAdder();
+
+    private volatile long consumed;
+
+    private volatile int expected;
+
+    private volatile String awaiting;
+
+    private volatile long since;
+
+    static
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(MBEAN));
+        }
+        catch (JMException exception)
+        {
+            // Already registered by a copy of the library loaded by another class loader
+        }
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param results Results the metrics describe
+     */
+    private FlowMetrics(Results results)
+    {
+        this.name = String.format(
+            "%s@%x", results.getClass().getSimpleName(), System.identityHashCode(results)
+        );
+    }
+
+    /**
+     * Fetch metrics of given results, creating them on first use.
+     *
+     * @param results Results the metrics describe
+     * @return Metrics
+     */
+    static FlowMetrics of(Results results)
+    {
+        expunge();
+        return FLOWS.computeIfAbsent(new Key(results), key -> new FlowMetrics(results));
+    }
+
+    /**
+     * Counts successful execution.
+     */
+    void succeeded()
+    {
+        successes.increment();
+    }
+
+    /**
+     * Counts failed execution.
+     */
+    void failed()
+    {
+        failures.increment();
+    }
+
+    /**
+     * Counts execution reported to a checkpoint.
+     */
+    void checkpointed()
+    {
+        checkpoints.increment();
+    }
+
+    /**
+     * Total number of reported executions, checkpoint executions included.
+     *
+     * @return Executions
+     */
+    long reported()
+    {
+        return successes.sum() + failures.sum() + checkpoints.sum();
+    }
+
+    /**
+     * Marks start of a blocking await on the current thread.
+     *
+     * @param times Number of expected executions
+     */
+    void awaiting(int times)
+    {
+        awaiting(times, Thread.currentThread().getName());
+    }
+
+    /**
+     * Marks end of a blocking await.
+     */
+    void awaited()
+    {
+        long start = since;
+        expected = 0;
+        awaiting = null;
+        since = 0;
+        consumed = successes.sum() + failures.sum();
+        waited.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Marks start of an asynchronous await, ended by {@link #awaited()} once the await completes.
+     *
+     * @param times Number of expected executions
+     */
+    void awaitingAsync(int times)
+    {
+        awaiting(times, "async");
+    }
+
+    /**
+     * Snapshot of the metrics.
+     *
+     * @return Flow state
+     */
+    FlowState state()
+    {
+        long succeeded = successes.sum();
+        long failed = failures.sum();
+        long start = since;
+        long waiting = waited.sum() + (start == 0 ? 0 : System.nanoTime() - start);
+        return new FlowState(
+            name, succeeded, failed, checkpoints.sum(), expected, succeeded + failed - consumed, awaiting,
+            TimeUnit.NANOSECONDS.toMillis(waiting)
+        );
+    }
+
+    /**
+     * Snapshots of all live metrics.
+     *
+     * @return Flow states
+     */
+    static FlowState[] states()
+    {
+        expunge();
+        List<FlowState> states = new ArrayList<>(FLOWS.size());
+        for (FlowMetrics metrics : FLOWS.values())
+        {
+            states.add(metrics.state());
+        }
+        return states.toArray(new FlowState[0]);
+    }
+
+    /**
+     * Marks start of an await. Expected executions are published last, so a reader seeing them also sees the
+     * awaiting thread.
+     *
+     * @param times  Number of expected executions
+     * @param thread Name of the awaiting thread
+     */
+    private void awaiting(int times, String thread)
+    {
+        awaiting = thread;
+        since = System.nanoTime();
+        expected = times;
+    }
+
+    /**
+     * Drops metrics of collected results.
+     */
+    private static void expunge()
+    {
+        Reference<? extends Results> reference = COLLECTED.poll();
+        while (reference != null)
+        {
+            FLOWS.remove(reference);
+            reference = COLLECTED.poll();
+        }
+    }
+
+    /**
+     * Weak key of results, equal to keys of the same results instance.
+     */
+    private static final class Key extends WeakReference<Results>
+    {
+        private final int hash;
+
+        private Key(Results results)
+        {
+            super(results, COLLECTED);
+            this.hash = System.identityHashCode(results);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+            if (!(other instanceof Key))
+            {
+                return false;
+            }
+            Results results = get();
+            return results != null && results == ((Key) other).get();
+        }
+    }
+
+    /**
+     * Registered MBean.
+     */
+    private static final class Bean implements AsyncFlowMXBean
+    {
+        @Override
+        public int getRegistered()
+        {
+            return AsyncFlow.registered();
+        }
+
+        @Override
+        public FlowState[] getFlows()
+        {
+            return states();
+        }
+    }
+}
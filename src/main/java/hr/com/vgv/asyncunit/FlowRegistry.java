@@ -0,0 +1,402 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of flows used through static AsyncFlow methods, one flow per thread. Flows are normally released by await,
+ * but a test that prepares and never awaits would leave its flow behind. The registry therefore evicts flows whose
+ * owning thread died or which weren't used for longer than a configured time to live, so a recycled pool thread never
+ * inherits a stale flow.
+ * <p>
+ * Idle flows are detected by periodic sweeps on the shared timer thread. A sweep marks every flow idle and evicts flows
+ * that are still idle once time to live expires. Lookups by the owning thread and executions reported to the flow
+ * both count as use. The owning thread only reads its flow state on lookup and writes it back when a sweep has marked
+ * the flow idle, so lookups stay allocation free and uncontended. Reported executions are read from flow metrics by
+ * the sweep itself, so they cost nothing extra.
+ * <p>
+ * How a flow is bound to threads is decided by {@link FlowBinding}, which is versioned. On Java 21 virtual threads
+ * inherit the flow of the thread that started them and share it with that thread. Inherited flows are used only by
+ * virtual threads and are not tracked for eviction, so platform threads never share a flow by inheritance. A flow
+ * propagated explicitly is bound by its captured entry instead and is used by any thread it is bound to.
+ * <p>
+ * Inherited entries don't hold the flow themselves, they read it from the entry of the owning thread. Platform threads
+ * inherit an entry too, e.g. pool workers started by a test, so an evicted or released flow is not kept alive by
+ * long-lived threads that never use it.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+final class FlowRegistry
+{
+    /**
+     * Default time to live of an idle flow in milliseconds.
+     */
+    static final long TTL = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Shortest period between two sweeps in milliseconds.
+     */
+    private static final long MIN_PERIOD = 10;
+
+    private final Set<Entry> entries = ConcurrentHashMap.newKeySet();
+
+    private final ThreadLocal<Entry> local = FlowBinding.local();
+
+    private volatile long ttl;
+
+    private ScheduledFuture<?> sweeper;
+
+    FlowRegistry()
+    {
+        this(TTL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param ttl  Time to live of an idle flow
+     * @param unit Time unit
+     */
+    FlowRegistry(long ttl, TimeUnit unit)
+    {
+        evictAfter(ttl, unit);
+    }
+
+    /**
+     * Fetch flow of the current thread or register a new one if it doesn't exist or was evicted.
+     *
+     * @return Async flow
+     */
+    AsyncFlow.Single current()
+    {
+        Entry entry = local.get();
+        AsyncFlow.Single flow = entry == null ? null : entry.flow();
+        if (flow == null || !entry.use() || entry.inherited() && !FlowBinding.virtual())
+        {
+            entry = register();
+            local.set(entry);
+            flow = entry.flow();
+        }
+        return flow;
+    }
+
+    /**
+     * Fetch flow of the current thread for await. Raises AssertionError if the flow was evicted since the last lookup,
+     * because executions prepared by it can't be awaited any more.
+     *
+     * @return Async flow
+     */
+    AsyncFlow.Single awaited()
+    {
+        Entry entry = local.get();
+        if (entry != null && entry.evicted())
+        {
+            throw new AssertionError(
+                String.format(
+                    "Flow of thread %s was evicted after being idle for longer than %d ms, executions prepared by it "
+                        + "can't be awaited. Increase time to live with AsyncFlow.evictAfter",
+                    Thread.currentThread().getName(), TimeUnit.NANOSECONDS.toMillis(ttl)
+                )
+            );
+        }
+        return current();
+    }
+
+    /**
+     * Releases flow of the current thread.
+     */
+    void release()
+    {
+        Entry entry = local.get();
+        local.remove();
+        if (entry != null && entry.ownedBy(Thread.currentThread()))
+        {
+            entry.evict();
+            entries.remove(entry);
+        }
+    }
+
+    /**
+     * Captures flow of the current thread, so it can be bound to another thread.
+     *
+     * @return Captured flow binding
+     */
+    Entry capture()
+    {
+        current();
+        return local.get().captured();
+    }
+
+    /**
+     * Binds captured flow to the current thread until the binding is restored.
+     *
+     * @param captured Captured flow binding
+     * @return Previous binding of the current thread
+     */
+    Entry bind(Entry captured)
+    {
+        Entry previous = local.get();
+        local.set(captured);
+        return previous;
+    }
+
+    /**
+     * Restores binding of the current thread.
+     *
+     * @param previous Previous binding returned from bind
+     */
+    void restore(Entry previous)
+    {
+        if (previous == null)
+        {
+            local.remove();
+        }
+        else
+        {
+            local.set(previous);
+        }
+    }
+
+    /**
+     * Number of registered flows tracked for eviction.
+     *
+     * @return Size
+     */
+    int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Changes time to live of idle flows. Flows are evicted at most one time to live plus one sweep period after
+     * their last use.
+     *
+     * @param period Time to live
+     * @param unit   Time unit
+     */
+    synchronized void evictAfter(long period, TimeUnit unit)
+    {
+        if (period <= 0)
+        {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        ttl = unit.toNanos(period);
+        if (sweeper != null)
+        {
+            sweeper.cancel(false);
+        }
+        long every = Math.max(MIN_PERIOD, unit.toMillis(period) / 2);
+        sweeper = Pending.TIMER.scheduleWithFixedDelay(this::sweep, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evicts flows of dead threads and flows idle for longer than time to live.
+     */
+    void sweep()
+    {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext())
+        {
+            Entry entry = iterator.next();
+            if (!entry.alive() || entry.expired(now, ttl))
+            {
+                entry.evict();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Registers new flow for the current thread.
+     *
+     * @return Entry
+     */
+    private Entry register()
+    {
+        Entry entry = new Entry(Thread.currentThread());
+        if (!FlowBinding.virtual())
+        {
+            entries.add(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Flow owned by a single thread. Entries inherited by child threads delegate to the entry of the owning thread,
+     * entries captured for propagation are the entry of the owning thread.
+     */
+    static final class Entry
+    {
+        private static final int ACTIVE = 0;
+
+        private static final int IDLE = 1;
+
+        private static final int EVICTED = 2;
+
+        private final WeakReference<Thread> owner;
+
+        private final AtomicInteger state;
+
+        private final Entry origin;
+
+        private volatile AsyncFlow.Single flow;
+
+        private volatile long since;
+
+        private volatile long reported;
+
+        Entry(Thread owner)
+        {
+            this.owner = new WeakReference<>(owner);
+            this.state = new AtomicInteger(ACTIVE);
+            this.flow = new AsyncFlow.Single();
+            this.origin = null;
+        }
+
+        private Entry(Entry origin)
+        {
+            this.owner = origin.owner;
+            this.state = origin.state;
+            this.origin = origin;
+        }
+
+        /**
+         * Flow of the entry, null once evicted.
+         *
+         * @return Async flow
+         */
+        AsyncFlow.Single flow()
+        {
+            AsyncFlow.Single current = flow;
+            if (origin != null)
+            {
+                current = origin.flow;
+            }
+            return current;
+        }
+
+        /**
+         * Check if entry was inherited from the thread that started the current one.
+         *
+         * @return Boolean
+         */
+        boolean inherited()
+        {
+            return origin != null;
+        }
+
+        /**
+         * Marks flow as used by its owner.
+         *
+         * @return False if flow was evicted
+         */
+        boolean use()
+        {
+            int current = state.get();
+            return current == ACTIVE || current == IDLE && state.compareAndSet(IDLE, ACTIVE);
+        }
+
+        /**
+         * Check if flow is owned by a given thread.
+         *
+         * @param thread Thread
+         * @return Boolean
+         */
+        boolean ownedBy(Thread thread)
+        {
+            return owner.get() == thread;
+        }
+
+        /**
+         * Creates entry for a child thread. Child reads flow and state of the owning entry, but only virtual threads
+         * use it.
+         *
+         * @return Entry
+         */
+        Entry inherit()
+        {
+            Entry root = this;
+            if (origin != null)
+            {
+                root = origin;
+            }
+            return new Entry(root);
+        }
+
+        /**
+         * Fetch entry for propagation to another thread. Entry inherited by a virtual thread propagates the owning
+         * entry, which is usable by any thread it is bound to, platform pool workers included.
+         *
+         * @return Entry
+         */
+        Entry captured()
+        {
+            Entry entry = this;
+            if (origin != null)
+            {
+                entry = origin;
+            }
+            return entry;
+        }
+
+        /**
+         * Check if owning thread is still running.
+         *
+         * @return Boolean
+         */
+        boolean alive()
+        {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+
+        /**
+         * Check if flow was evicted.
+         *
+         * @return Boolean
+         */
+        boolean evicted()
+        {
+            return state.get() == EVICTED;
+        }
+
+        /**
+         * Marks active flow as idle or checks whether idle flow outlived its time to live. Flow which reported
+         * executions since the previous sweep is treated as active.
+         *
+         * @param now Current time in nanoseconds
+         * @param ttl Time to live in nanoseconds
+         * @return True if flow should be evicted
+         */
+        boolean expired(long now, long ttl)
+        {
+            AsyncFlow.Single current = flow;
+            long executions = current == null ? reported : current.metrics().reported();
+            if (state.get() == ACTIVE || executions != reported)
+            {
+                reported = executions;
+                since = now;
+                state.compareAndSet(ACTIVE, IDLE);
+                return false;
+            }
+            return now - since >= ttl && state.compareAndSet(IDLE, EVICTED);
+        }
+
+        /**
+         * Evicts flow and drops reference to it.
+         */
+        void evict()
+        {
+            state.set(EVICTED);
+            flow = null;
+        }
+    }
+}
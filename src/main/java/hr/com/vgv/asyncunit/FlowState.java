@@ -0,0 +1,131 @@
+package hr.com.vgv.asyncunit;
+
+/**
+ * Snapshot of flow results exposed over JMX.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class FlowState
+{
+    private final String name;
+
+    private final long successes;
+
+    private final long failures;
+
+    private final long checkpoints;
+
+    private final int expected;
+
+    private final long received;
+
+    private final String awaiting;
+
+    private final long waiting;
+
+    /**
+     * Ctor.
+     *
+     * @param name        Name of flow results
+     * @param successes   Number of successful executions
+     * @param failures    Number of failed executions
+     * @param checkpoints Number of executions reported to checkpoints
+     * @param expected    Number of executions expected by the current await
+     * @param received    Number of executions received since the last await
+     * @param awaiting    Name of the awaiting thread
+     * @param waiting     Time spent waiting in milliseconds
+     */
+    FlowState(
+        String name, long successes, long failures, long checkpoints, int expected, long received, String awaiting,
+        long waiting)
+    {
+        this.name = name;
+        this.successes = successes;
+        this.failures = failures;
+        this.checkpoints = checkpoints;
+        this.expected = expected;
+        this.received = received;
+        this.awaiting = awaiting;
+        this.waiting = waiting;
+    }
+
+    /**
+     * Name of flow results, made of their type and identity.
+     *
+     * @return Name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Total number of successful executions.
+     *
+     * @return Successes
+     */
+    public long getSuccesses()
+    {
+        return successes;
+    }
+
+    /**
+     * Total number of failed executions that are propagated by the flow.
+     *
+     * @return Failures
+     */
+    public long getFailures()
+    {
+        return failures;
+    }
+
+    /**
+     * Total number of executions reported to checkpoints, successful and failed.
+     *
+     * @return Checkpoint executions
+     */
+    public long getCheckpoints()
+    {
+        return checkpoints;
+    }
+
+    /**
+     * Number of executions expected by the current await, or zero if the flow is not awaited.
+     *
+     * @return Expected executions
+     */
+    public int getExpected()
+    {
+        return expected;
+    }
+
+    /**
+     * Number of executions received since the last await finished.
+     *
+     * @return Received executions
+     */
+    public long getReceived()
+    {
+        return received;
+    }
+
+    /**
+     * Name of the thread blocked in await, "async" for an asynchronous await, or null if the flow is not awaited.
+     *
+     * @return Thread name
+     */
+    public String getAwaiting()
+    {
+        return awaiting;
+    }
+
+    /**
+     * Total time spent waiting for the flow, including the current await.
+     *
+     * @return Time in milliseconds
+     */
+    public long getWaitingMillis()
+    {
+        return waiting;
+    }
+}
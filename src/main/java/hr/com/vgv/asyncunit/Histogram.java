@@ -0,0 +1,157 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values. Values are recorded lock-free into a fixed number of log-linear buckets: every
+ * power of two is split into {@value #SUB_BUCKETS} linear buckets, so reported percentiles are within about 3% of the
+ * recorded values while the histogram never grows.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+final class Histogram
+{
+    /**
+     * Number of bits resolved linearly within a power of two.
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * Number of linear buckets within a power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Total number of buckets, enough for any non-negative long.
+     */
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong max = new AtomicLong();
+
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Records a single value. Negative values are recorded as zero.
+     *
+     * @param value Value
+     */
+    void record(long value)
+    {
+        long positive = Math.max(0, value);
+        buckets.incrementAndGet(index(positive));
+        sum.add(positive);
+        long current = max.get();
+        while (positive > current && !max.compareAndSet(current, positive))
+        {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Number of recorded values.
+     *
+     * @return Count
+     */
+    long count()
+    {
+        long count = 0;
+        for (int idx = 0; idx < BUCKETS; idx++)
+        {
+            count += buckets.get(idx);
+        }
+        return count;
+    }
+
+    /**
+     * Highest recorded value.
+     *
+     * @return Maximum
+     */
+    long max()
+    {
+        return max.get();
+    }
+
+    /**
+     * Mean of recorded values.
+     *
+     * @return Mean, or zero if nothing was recorded
+     */
+    double mean()
+    {
+        long count = count();
+        if (count == 0)
+        {
+            return 0;
+        }
+        return (double) sum.sum() / count;
+    }
+
+    /**
+     * Value below or at which given fraction of recorded values fall. Upper bound of the matching bucket is reported,
+     * so the value never underestimates recorded values.
+     *
+     * @param fraction Fraction between 0 and 1, e.g. 0.99 for 99th percentile
+     * @return Percentile
+     */
+    long percentile(double fraction)
+    {
+        if (fraction < 0 || fraction > 1)
+        {
+            throw new IllegalArgumentException(String.format("Fraction %s is not between 0 and 1", fraction));
+        }
+        long count = count();
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int idx = 0; idx < BUCKETS && count > 0; idx++)
+        {
+            seen += buckets.get(idx);
+            if (seen >= rank)
+            {
+                return Math.min(upper(idx), max.get());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Bucket index of a value.
+     *
+     * @param value Non-negative value
+     * @return Index
+     */
+    private static int index(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Highest value falling into a bucket.
+     *
+     * @param index Bucket index
+     * @return Upper bound
+     */
+    private static long upper(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
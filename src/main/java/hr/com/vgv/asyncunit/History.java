@@ -0,0 +1,465 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * History of concurrent operations, checked for linearizability against a sequential model. Recorded functions log
+ * invocation and response time of every operation, together with its inputs and result, into append-only buffers of
+ * the calling thread, so recording adds no shared writes to the code under test.
+ * <p>
+ * Example of usage:
+ * <p>
+ * History&lt;String, Integer, Integer&gt; history = new History&lt;&gt;();
+ * BiFunction&lt;String, Integer, Integer&gt; put = flow.prepareFn(history, cache::put);
+ * ... run put from many threads ...
+ * flow.await(1000, operations);
+ * history.assertLinearizable(new RegisterModel());
+ * <p>
+ * Operations that threw are kept in the history with the throwable as their result and are checked with
+ * {@link Model#fail(Object, Object, Object, Throwable)}, which by default assumes they had no effect. History must be
+ * checked after all operations finished, e.g. after the flow has been awaited.
+ *
+ * @param <T> First input
+ * @param <U> Second input
+ * @param <R> Result
+ * @author Vedran Vatavuk
+ */
+public final class History<T, U, R>
+{
+    /**
+     * Maximum number of operations listed in an error message.
+     */
+    private static final int LISTED = 32;
+
+    private final Queue<List<Operation<T, U, R>>> buffers = new ConcurrentLinkedQueue<>();
+
+    private final ThreadLocal<List<Operation<T, U, R>>> local = ThreadLocal.withInitial(this::buffer);
+
+    /**
+     * Records every invocation of a BiFunction.
+     *
+     * @param function Function under test
+     * @return Recorded function
+     */
+    public BiFunction<T, U, R> record(BiFunction<T, U, R> function)
+    {
+        return (first, second) -> apply(function, first, second);
+    }
+
+    /**
+     * Records every invocation of a Function. Second input of its operations is null.
+     *
+     * @param function Function under test
+     * @return Recorded function
+     */
+    public Function<T, R> record(Function<T, R> function)
+    {
+        BiFunction<T, U, R> adapted = (first, second) -> function.apply(first);
+        return first -> apply(adapted, first, null);
+    }
+
+    /**
+     * Applies function and records the invocation as an operation, whether it returned or threw.
+     *
+     * @param function Function under test
+     * @param first    First input
+     * @param second   Second input
+     * @return Result
+     */
+    R apply(BiFunction<T, U, R> function, T first, U second)
+    {
+        long invoked = System.nanoTime();
+        R result;
+        try
+        {
+            result = function.apply(first, second);
+        }
+        catch (Throwable throwable)
+        {
+            long returned = System.nanoTime();
+            local.get().add(new Operation<>(first, second, null, throwable, invoked, returned));
+            throw throwable;
+        }
+        long returned = System.nanoTime();
+        local.get().add(new Operation<>(first, second, result, null, invoked, returned));
+        return result;
+    }
+
+    /**
+     * Number of recorded operations.
+     *
+     * @return Size
+     */
+    public int size()
+    {
+        int size = 0;
+        for (List<Operation<T, U, R>> buffer : buffers)
+        {
+            size += buffer.size();
+        }
+        return size;
+    }
+
+    /**
+     * Checks that the history is linearizable with respect to a sequential model. Operations of different partitions
+     * are checked separately. Raises AssertionError listing operations of the first partition without a valid
+     * linearization.
+     *
+     * @param model Sequential model
+     * @param <S>   Model state
+     */
+    public <S> void assertLinearizable(Model<S, T, U, R> model)
+    {
+        Map<Object, List<Operation<T, U, R>>> partitions = new LinkedHashMap<>();
+        for (List<Operation<T, U, R>> buffer : buffers)
+        {
+            for (Operation<T, U, R> operation : buffer)
+            {
+                partitions.computeIfAbsent(
+                    model.partition(operation.first, operation.second), key -> new ArrayList<>()
+                ).add(operation);
+            }
+        }
+        for (Map.Entry<Object, List<Operation<T, U, R>>> partition : partitions.entrySet())
+        {
+            if (!linearizable(model, partition.getValue()))
+            {
+                throw new AssertionError(failure(partition.getKey(), partition.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Registers buffer of a thread that records its first operation.
+     *
+     * @return Buffer
+     */
+    private List<Operation<T, U, R>> buffer()
+    {
+        List<Operation<T, U, R>> buffer = new ArrayList<>();
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Searches for linearization of operations. Operations are linearized one by one in an order consistent with
+     * real time, backtracking when the model rejects a result. Every visited combination of linearized operations and
+     * model state is memoized, so each one is explored at most once.
+     *
+     * @param model      Sequential model
+     * @param operations Operations
+     * @param <S>        Model state
+     * @return True if linearization exists
+     */
+    private static <S, T, U, R> boolean linearizable(Model<S, T, U, R> model, List<Operation<T, U, R>> operations)
+    {
+        Entry<T, U, R> head = Entry.list(operations);
+        Map<BitSet, List<S>> visited = new HashMap<>();
+        BitSet linearized = new BitSet(operations.size());
+        List<Entry<T, U, R>> calls = new ArrayList<>();
+        List<S> states = new ArrayList<>();
+        S state = model.initial();
+        Entry<T, U, R> entry = head.next;
+        while (head.next != null)
+        {
+            if (entry.call)
+            {
+                Operation<T, U, R> operation = entry.operation;
+                S next = operation.failure == null
+                    ? model.apply(state, operation.first, operation.second, operation.result)
+                    : model.fail(state, operation.first, operation.second, operation.failure);
+                boolean fresh = false;
+                if (next != null)
+                {
+                    linearized.set(entry.id);
+                    fresh = remember(visited, linearized, next);
+                    if (!fresh)
+                    {
+                        linearized.clear(entry.id);
+                    }
+                }
+                if (fresh)
+                {
+                    calls.add(entry);
+                    states.add(state);
+                    state = next;
+                    entry.lift();
+                    entry = head.next;
+                }
+                else
+                {
+                    entry = entry.next;
+                }
+            }
+            else
+            {
+                if (calls.isEmpty())
+                {
+                    return false;
+                }
+                Entry<T, U, R> call = calls.remove(calls.size() - 1);
+                state = states.remove(states.size() - 1);
+                linearized.clear(call.id);
+                call.unlift();
+                entry = call.next;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remembers combination of linearized operations and model state.
+     *
+     * @param visited    Visited combinations
+     * @param linearized Linearized operations
+     * @param state      Model state
+     * @param <S>        Model state
+     * @return False if combination was already visited
+     */
+    private static <S> boolean remember(Map<BitSet, List<S>> visited, BitSet linearized, S state)
+    {
+        List<S> states = visited.get(linearized);
+        if (states == null)
+        {
+            states = new ArrayList<>(1);
+            visited.put((BitSet) linearized.clone(), states);
+        }
+        else if (states.contains(state))
+        {
+            return false;
+        }
+        states.add(state);
+        return true;
+    }
+
+    /**
+     * Constructs error message.
+     *
+     * @param partition  Partition
+     * @param operations Operations of the partition
+     * @return Error message
+     */
+    private static String failure(Object partition, Collection<? extends Operation<?, ?, ?>> operations)
+    {
+        List<Operation<?, ?, ?>> sorted = new ArrayList<>(operations);
+        sorted.sort((left, right) -> Long.compare(left.invoked, right.invoked));
+        long origin = sorted.get(0).invoked;
+        StringBuilder message = new StringBuilder(
+            String.format(
+                "History of %d operations in partition %s is not linearizable", operations.size(), partition
+            )
+        );
+        for (Operation<?, ?, ?> operation : sorted.subList(0, Math.min(LISTED, sorted.size())))
+        {
+            message.append(
+                String.format(
+                    "%n  [%d, %d] ns: (%s, %s) -> %s", operation.invoked - origin, operation.returned - origin,
+                    operation.first, operation.second,
+                    operation.failure == null ? operation.result : "threw " + operation.failure
+                )
+            );
+        }
+        if (sorted.size() > LISTED)
+        {
+            message.append(String.format("%n  ... %d more", sorted.size() - LISTED));
+        }
+        return message.toString();
+    }
+
+    /**
+     * Sequential specification of the object under test. States are compared with equals while searching for a
+     * linearization, so equal states must have equal hash codes and states must not be mutated by the model. States
+     * can't be null, because null marks a result that is not possible.
+     *
+     * @param <S> Model state
+     * @param <T> First input
+     * @param <U> Second input
+     * @param <R> Result
+     */
+    public interface Model<S, T, U, R>
+    {
+        /**
+         * Initial state.
+         *
+         * @return State
+         */
+        S initial();
+
+        /**
+         * Applies operation to a state.
+         *
+         * @param state  State before operation
+         * @param first  First input
+         * @param second Second input
+         * @param result Observed result
+         * @return State after operation, or null if operation can't return observed result in a given state
+         */
+        S apply(S state, T first, U second, R result);
+
+        /**
+         * Applies operation that threw to a state. By default the operation is assumed to have had no effect.
+         *
+         * @param state     State before operation
+         * @param first     First input
+         * @param second    Second input
+         * @param throwable Observed throwable
+         * @return State after operation, or null if operation can't throw in a given state
+         */
+        default S fail(S state, T first, U second, Throwable throwable)
+        {
+            return state;
+        }
+
+        /**
+         * Partition of an operation. Operations of different partitions, e.g. operations on different keys of a map,
+         * don't affect each other and are checked separately, which keeps large histories fast to check.
+         *
+         * @param first  First input
+         * @param second Second input
+         * @return Partition
+         */
+        default Object partition(T first, U second)
+        {
+            return "all";
+        }
+    }
+
+    /**
+     * Recorded operation. Failure is null for operations that returned.
+     */
+    private static final class Operation<T, U, R>
+    {
+        private final T first;
+
+        private final U second;
+
+        private final R result;
+
+        private final Throwable failure;
+
+        private final long invoked;
+
+        private final long returned;
+
+        Operation(T first, U second, R result, Throwable failure, long invoked, long returned)
+        {
+            this.first = first;
+            this.second = second;
+            this.result = result;
+            this.failure = failure;
+            this.invoked = invoked;
+            this.returned = returned;
+        }
+    }
+
+    /**
+     * Invocation or response event in a doubly linked list ordered by time. Linearized operations are lifted out of the
+     * list and put back on backtracking.
+     */
+    private static final class Entry<T, U, R>
+    {
+        private final Operation<T, U, R> operation;
+
+        private final int id;
+
+        private final boolean call;
+
+        private Entry<T, U, R> match;
+
+        private Entry<T, U, R> prev;
+
+        private Entry<T, U, R> next;
+
+        Entry(Operation<T, U, R> operation, int id, boolean call)
+        {
+            this.operation = operation;
+            this.id = id;
+            this.call = call;
+        }
+
+        /**
+         * Builds list of events. Invocations precede responses with the same time, so such operations are treated as
+         * concurrent.
+         *
+         * @param operations Operations
+         * @return Head of the list
+         */
+        static <T, U, R> Entry<T, U, R> list(List<Operation<T, U, R>> operations)
+        {
+            List<Entry<T, U, R>> events = new ArrayList<>(operations.size() * 2);
+            for (int id = 0; id < operations.size(); id++)
+            {
+                Operation<T, U, R> operation = operations.get(id);
+                Entry<T, U, R> call = new Entry<>(operation, id, true);
+                Entry<T, U, R> response = new Entry<>(operation, id, false);
+                call.match = response;
+                events.add(call);
+                events.add(response);
+            }
+            events.sort(
+                (left, right) -> {
+                    int order = Long.compare(left.time(), right.time());
+                    return order == 0 ? Boolean.compare(right.call, left.call) : order;
+                }
+            );
+            Entry<T, U, R> head = new Entry<>(null, -1, false);
+            Entry<T, U, R> last = head;
+            for (Entry<T, U, R> event : events)
+            {
+                last.next = event;
+                event.prev = last;
+                last = event;
+            }
+            return head;
+        }
+
+        /**
+         * Removes invocation and its response from the list.
+         */
+        void lift()
+        {
+            prev.next = next;
+            if (next != null)
+            {
+                next.prev = prev;
+            }
+            match.prev.next = match.next;
+            if (match.next != null)
+            {
+                match.next.prev = match.prev;
+            }
+        }
+
+        /**
+         * Puts invocation and its response back into the list.
+         */
+        void unlift()
+        {
+            match.prev.next = match;
+            if (match.next != null)
+            {
+                match.next.prev = match;
+            }
+            prev.next = this;
+            if (next != null)
+            {
+                next.prev = this;
+            }
+        }
+
+        private long time()
+        {
+            return call ? operation.invoked : operation.returned;
+        }
+    }
+}
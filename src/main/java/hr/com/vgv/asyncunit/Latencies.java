@@ -0,0 +1,110 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histogram of flow executions. Durations are recorded lock-free into a fixed number of log-linear buckets:
+ * every power of two is split into 32 linear buckets, so reported percentiles are within about 3% of the recorded
+ * values while the histogram never grows.
+ * <p>
+ * Example of usage:
+ * <p>
+ * AsyncFlow.Single flow = new AsyncFlow.Single().with(new Latencies());
+ * ...
+ * flow.awaitReport(1000, 100).assertP99Below(5, TimeUnit.MILLISECONDS);
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class Latencies implements Probe
+{
+    private final Histogram histogram = new Histogram();
+
+    @Override
+    public long enter()
+    {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void exit(long token)
+    {
+        record(System.nanoTime() - token);
+    }
+
+    /**
+     * Records a single duration.
+     *
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(long nanos)
+    {
+        histogram.record(nanos);
+    }
+
+    /**
+     * Number of recorded durations.
+     *
+     * @return Count
+     */
+    public long count()
+    {
+        return histogram.count();
+    }
+
+    /**
+     * Longest recorded duration.
+     *
+     * @param unit Time unit
+     * @return Maximum
+     */
+    public long max(TimeUnit unit)
+    {
+        return unit.convert(histogram.max(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Duration below or at which given fraction of recorded durations fall. Upper bound of the matching bucket is
+     * reported, so the value never underestimates recorded durations.
+     *
+     * @param fraction Fraction between 0 and 1, e.g. 0.99 for 99th percentile
+     * @param unit     Time unit
+     * @return Percentile
+     */
+    public long percentile(double fraction, TimeUnit unit)
+    {
+        return unit.convert(histogram.percentile(fraction), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Raises AssertionError if given percentile is not below the limit.
+     *
+     * @param fraction Fraction between 0 and 1, e.g. 0.99 for 99th percentile
+     * @param limit    Limit
+     * @param unit     Time unit of limit
+     */
+    public void assertPercentileBelow(double fraction, long limit, TimeUnit unit)
+    {
+        long actual = percentile(fraction, TimeUnit.NANOSECONDS);
+        if (actual >= unit.toNanos(limit))
+        {
+            throw new AssertionError(
+                String.format(
+                    "Latency percentile %s was %d ns instead of below %d %s",
+                    fraction * 100, actual, limit, unit.name().toLowerCase()
+                )
+            );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "Latency in ns of %d executions: mean %.0f, p50 %d, p90 %d, p99 %d, max %d",
+            count(), histogram.mean(), histogram.percentile(0.5), histogram.percentile(0.9),
+            histogram.percentile(0.99), histogram.max()
+        );
+    }
+}
@@ -0,0 +1,140 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Asynchronous await of execution results. Completed by the thread that delivers the final result or by a shared timer
+ * thread when the timeout expires, so no thread is parked while results are pending.
+ *
+ * @author Vedran Vatavuk
+ */
+final class Pending
+{
+    /**
+     * Timer shared by all pending awaits and flow registry sweeps.
+     */
+    static final ScheduledExecutorService TIMER = timer();
+
+    /**
+     * Future completed when await finishes.
+     */
+    final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    /**
+     * Number of expected results.
+     */
+    final int expected;
+
+    /**
+     * Total number of received results at which await finishes.
+     */
+    final long target;
+
+    private volatile ScheduledFuture<?> timeout;
+
+    private volatile ScheduledFuture<?> polling;
+
+    /**
+     * Ctor.
+     *
+     * @param expected Number of expected results
+     * @param target   Total number of received results at which await finishes
+     */
+    Pending(int expected, long target)
+    {
+        this.expected = expected;
+        this.target = target;
+    }
+
+    /**
+     * Schedules expiry on the shared timer. Period of zero means await never expires.
+     *
+     * @param period   Time period
+     * @param timeUnit Time unit
+     * @param expiry   Action executed when period expires
+     */
+    void expireAfter(long period, TimeUnit timeUnit, Runnable expiry)
+    {
+        if (period > 0)
+        {
+            timeout = TIMER.schedule(expiry, period, timeUnit);
+        }
+    }
+
+    /**
+     * Runs a check periodically on the shared timer until it returns true or await finishes.
+     *
+     * @param period   Time period
+     * @param timeUnit Time unit
+     * @param check    Check returning true once polling is no longer needed
+     */
+    void pollEvery(long period, TimeUnit timeUnit, BooleanSupplier check)
+    {
+        polling = TIMER.scheduleWithFixedDelay(
+            () -> {
+                if (check.getAsBoolean())
+                {
+                    cancel(polling);
+                }
+            },
+            period, period, timeUnit
+        );
+        if (future.isDone())
+        {
+            cancel(polling);
+        }
+    }
+
+    /**
+     * Completes the future with the first failure or with success if there is none.
+     *
+     * @param failure Failure or null
+     */
+    void finish(Throwable failure)
+    {
+        cancel(timeout);
+        cancel(polling);
+        if (failure == null)
+        {
+            future.complete(null);
+        }
+        else
+        {
+            future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Cancels scheduled task if there is one.
+     *
+     * @param scheduled Scheduled task or null
+     */
+    private static void cancel(ScheduledFuture<?> scheduled)
+    {
+        if (scheduled != null)
+        {
+            scheduled.cancel(false);
+        }
+    }
+
+    /**
+     * Creates timer running on a single daemon thread.
+     *
+     * @return Timer
+     */
+    private static ScheduledExecutorService timer()
+    {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "asyncunit-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
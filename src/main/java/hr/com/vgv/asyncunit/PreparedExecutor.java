@@ -0,0 +1,404 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor service which prepares every submitted task for testing in an async flow. Each task reports its result
+ * directly into the flow, so production code that owns the executor doesn't need to prepare tasks by hand.
+ * <p>
+ * Example of usage:
+ * <p>
+ * AsyncFlow.Single flow = new AsyncFlow.Single();
+ * ExecutorService executor = flow.wrap(Executors.newFixedThreadPool(4));
+ * executor.submit(() -&gt; assertTrue(true));
+ * flow.await();
+ * <p>
+ * Queue depth and active count are tracked while the flow runs, so pool saturation can be observed during load tests.
+ * Submitted tasks are wrapped in futures which know their prepared task, so tasks cancelled or drained by shutdownNow
+ * before they start leave the queue too.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class PreparedExecutor implements ExecutorService
+{
+    private final AsyncFlow.Single flow;
+
+    private final ExecutorService origin;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Ctor.
+     *
+     * @param flow   Flow receiving task results
+     * @param origin Executor running tasks
+     */
+    public PreparedExecutor(AsyncFlow.Single flow, ExecutorService origin)
+    {
+        this.flow = flow;
+        this.origin = origin;
+    }
+
+    /**
+     * Number of submitted tasks that haven't started yet.
+     *
+     * @return Queue depth
+     */
+    public int queueDepth()
+    {
+        return queued.get();
+    }
+
+    /**
+     * Number of tasks currently executing.
+     *
+     * @return Active count
+     */
+    public int activeCount()
+    {
+        return active.get();
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        PreparedRunnable task = new PreparedRunnable(command);
+        try
+        {
+            origin.execute(task);
+        }
+        catch (RejectedExecutionException exception)
+        {
+            task.dequeue();
+            throw exception;
+        }
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> callable)
+    {
+        PreparedCallable<T> task = new PreparedCallable<>(callable);
+        return submitted(new PreparedFuture<>(task, task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable runnable, T result)
+    {
+        PreparedRunnable task = new PreparedRunnable(runnable);
+        return submitted(new PreparedFuture<>(Executors.callable(task, result), task));
+    }
+
+    @Override
+    public Future<?> submit(Runnable runnable)
+    {
+        return submit(runnable, null);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> callables) throws InterruptedException
+    {
+        List<PreparedCallable<T>> tasks = prepared(callables);
+        try
+        {
+            return origin.invokeAll(tasks);
+        }
+        finally
+        {
+            dequeue(tasks);
+        }
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> callables, long timeout, TimeUnit unit)
+        throws InterruptedException
+    {
+        List<PreparedCallable<T>> tasks = prepared(callables);
+        try
+        {
+            return origin.invokeAll(tasks, timeout, unit);
+        }
+        finally
+        {
+            dequeue(tasks);
+        }
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> callables)
+        throws InterruptedException, ExecutionException
+    {
+        List<PreparedCallable<T>> tasks = prepared(callables);
+        try
+        {
+            return origin.invokeAny(tasks);
+        }
+        finally
+        {
+            dequeue(tasks);
+        }
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> callables, long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        List<PreparedCallable<T>> tasks = prepared(callables);
+        try
+        {
+            return origin.invokeAny(tasks, timeout, unit);
+        }
+        finally
+        {
+            dequeue(tasks);
+        }
+    }
+
+    @Override
+    public void shutdown()
+    {
+        origin.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        List<Runnable> pending = origin.shutdownNow();
+        for (Runnable task : pending)
+        {
+            if (task instanceof Prepared)
+            {
+                ((Prepared) task).dequeue();
+            }
+            else if (task instanceof PreparedFuture)
+            {
+                ((PreparedFuture<?>) task).task.dequeue();
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return origin.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return origin.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return origin.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Executes future of a submitted task.
+     *
+     * @param future Future
+     * @param <T>    T
+     * @return Future
+     */
+    private <T> Future<T> submitted(PreparedFuture<T> future)
+    {
+        try
+        {
+            origin.execute(future);
+        }
+        catch (RejectedExecutionException exception)
+        {
+            future.task.dequeue();
+            throw exception;
+        }
+        return future;
+    }
+
+    /**
+     * Prepares batch of callables.
+     *
+     * @param callables Callables
+     * @param <T>       T
+     * @return Prepared callables
+     */
+    private <T> List<PreparedCallable<T>> prepared(Collection<? extends Callable<T>> callables)
+    {
+        List<PreparedCallable<T>> tasks = new ArrayList<>(callables.size());
+        for (Callable<T> callable : callables)
+        {
+            tasks.add(new PreparedCallable<>(callable));
+        }
+        return tasks;
+    }
+
+    /**
+     * Removes batch tasks that never started from the queue, e.g. cancelled on timeout.
+     *
+     * @param tasks Tasks
+     */
+    private static void dequeue(List<? extends Prepared> tasks)
+    {
+        for (Prepared task : tasks)
+        {
+            task.dequeue();
+        }
+    }
+
+    /**
+     * Task counted in queue depth from submission until it starts. Flow counts it as submitted until it ends or is
+     * removed from the queue without starting.
+     */
+    private class Prepared
+    {
+        private final AtomicBoolean dequeued = new AtomicBoolean(false);
+
+        Prepared()
+        {
+            queued.incrementAndGet();
+            flow.submit();
+        }
+
+        /**
+         * Removes task that never started from the queue. Only the first call has an effect.
+         */
+        final void dequeue()
+        {
+            if (dequeued.compareAndSet(false, true))
+            {
+                queued.decrementAndGet();
+                flow.withdraw();
+            }
+        }
+
+        /**
+         * Marks task as started.
+         *
+         * @return False if task was already removed from the queue
+         */
+        final boolean start()
+        {
+            boolean started = dequeued.compareAndSet(false, true);
+            if (started)
+            {
+                queued.decrementAndGet();
+            }
+            active.incrementAndGet();
+            return started;
+        }
+
+        /**
+         * Marks task as finished.
+         *
+         * @param started Result of start
+         */
+        final void end(boolean started)
+        {
+            active.decrementAndGet();
+            if (started)
+            {
+                flow.withdraw();
+            }
+        }
+    }
+
+    /**
+     * Future of a submitted task. Queued object is the future, so it keeps the prepared task to remove it from the
+     * queue when the future is cancelled or returned by shutdownNow.
+     *
+     * @param <T> T
+     */
+    private static final class PreparedFuture<T> extends FutureTask<T>
+    {
+        private final Prepared task;
+
+        PreparedFuture(Callable<T> callable, Prepared task)
+        {
+            super(callable);
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel(boolean interrupt)
+        {
+            boolean cancelled = super.cancel(interrupt);
+            if (cancelled)
+            {
+                task.dequeue();
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * Runnable reporting its result into the flow.
+     */
+    private final class PreparedRunnable extends Prepared implements Runnable
+    {
+        private final Runnable runnable;
+
+        PreparedRunnable(Runnable runnable)
+        {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run()
+        {
+            boolean started = start();
+            try
+            {
+                flow.run(runnable);
+            }
+            finally
+            {
+                end(started);
+            }
+        }
+    }
+
+    /**
+     * Callable reporting its result into the flow.
+     *
+     * @param <T> T
+     */
+    private final class PreparedCallable<T> extends Prepared implements Callable<T>
+    {
+        private final Callable<T> callable;
+
+        PreparedCallable(Callable<T> callable)
+        {
+            this.callable = callable;
+        }
+
+        @Override
+        public T call() throws Exception
+        {
+            boolean started = start();
+            try
+            {
+                return flow.call(callable);
+            }
+            finally
+            {
+                end(started);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package hr.com.vgv.asyncunit;
+
+/**
+ * Measurement taken around every execution of a prepared flow. Probes are entered on the worker thread right before the
+ * code under test runs and exited right after it finishes, before the execution result is reported.
+ * <p>
+ * Tokens of all probes of a flow are kept in a long[] allocated on every probed execution, so flows with probes
+ * allocate on each execution while flows without probes don't.
+ *
+ * @author Vedran Vatavuk
+ */
+public interface Probe
+{
+    /**
+     * Called before execution.
+     *
+     * @return Token passed to exit call of the same execution
+     */
+    long enter();
+
+    /**
+     * Called after execution, whether it succeeded or failed.
+     *
+     * @param token Token returned by enter call of the same execution
+     */
+    void exit(long token);
+
+    /**
+     * Called when the flow is awaited, after its executions finished or await failed. Executions prepared after that
+     * enter the probe again.
+     */
+    default void awaited()
+    {
+    }
+}
@@ -0,0 +1,63 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * ForkJoin task which runs with the flow captured when it was created, so prepare calls on pool workers report to the
+ * flow of the thread that created the task.
+ *
+ * @param <T> T
+ * @author Vedran Vatavuk
+ */
+final class PropagatedTask<T> extends ForkJoinTask<T>
+{
+    private static final long serialVersionUID = 1L;
+
+    private final transient FlowRegistry registry;
+
+    private final transient FlowRegistry.Entry captured;
+
+    private final ForkJoinTask<T> task;
+
+    private T result;
+
+    /**
+     * Ctor.
+     *
+     * @param registry Flow registry
+     * @param task     Task running with captured flow
+     */
+    PropagatedTask(FlowRegistry registry, ForkJoinTask<T> task)
+    {
+        this.registry = registry;
+        this.captured = registry.capture();
+        this.task = task;
+    }
+
+    @Override
+    public T getRawResult()
+    {
+        return result;
+    }
+
+    @Override
+    protected void setRawResult(T value)
+    {
+        result = value;
+    }
+
+    @Override
+    protected boolean exec()
+    {
+        FlowRegistry.Entry previous = registry.bind(captured);
+        try
+        {
+            result = task.invoke();
+        }
+        finally
+        {
+            registry.restore(previous);
+        }
+        return true;
+    }
+}
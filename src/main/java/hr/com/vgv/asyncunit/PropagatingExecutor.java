@@ -0,0 +1,137 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executor service which propagates static flow of the submitting thread to submitted tasks. Flow is captured once
+ * per task on submission and bound to the worker thread while the task runs, so code calling AsyncFlow.prepare on
+ * workers reports to the flow awaited by the submitting thread.
+ * <p>
+ * Example of usage:
+ * <p>
+ * ExecutorService executor = AsyncFlow.propagate(Executors.newFixedThreadPool(4));
+ * executor.submit(() -&gt; AsyncFlow.prepare(() -&gt; assertTrue(true)).run());
+ * AsyncFlow.await();
+ *
+ * @author Vedran Vatavuk
+ */
+public final class PropagatingExecutor implements ExecutorService
+{
+    private final ExecutorService origin;
+
+    /**
+     * Ctor.
+     *
+     * @param origin Executor running tasks
+     */
+    public PropagatingExecutor(ExecutorService origin)
+    {
+        this.origin = origin;
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        origin.execute(AsyncFlow.propagate(command));
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> callable)
+    {
+        return origin.submit(AsyncFlow.propagate(callable));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable runnable, T result)
+    {
+        return origin.submit(AsyncFlow.propagate(runnable), result);
+    }
+
+    @Override
+    public Future<?> submit(Runnable runnable)
+    {
+        return origin.submit(AsyncFlow.propagate(runnable));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> callables) throws InterruptedException
+    {
+        return origin.invokeAll(propagated(callables));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> callables, long timeout, TimeUnit unit)
+        throws InterruptedException
+    {
+        return origin.invokeAll(propagated(callables), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> callables)
+        throws InterruptedException, ExecutionException
+    {
+        return origin.invokeAny(propagated(callables));
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> callables, long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        return origin.invokeAny(propagated(callables), timeout, unit);
+    }
+
+    @Override
+    public void shutdown()
+    {
+        origin.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        return origin.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return origin.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return origin.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return origin.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Propagates flow to batch of callables.
+     *
+     * @param callables Callables
+     * @param <T>       T
+     * @return Propagated callables
+     */
+    private static <T> List<Callable<T>> propagated(Collection<? extends Callable<T>> callables)
+    {
+        List<Callable<T>> tasks = new ArrayList<>(callables.size());
+        for (Callable<T> callable : callables)
+        {
+            tasks.add(AsyncFlow.propagate(callable));
+        }
+        return tasks;
+    }
+}
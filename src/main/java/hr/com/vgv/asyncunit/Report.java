@@ -0,0 +1,134 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report of a finished async flow. Gives access to probes measured during the flow and asserts on their values.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class Report
+{
+    private final Probe[] probes;
+
+    /**
+     * Ctor.
+     *
+     * @param probes Probes measured during the flow
+     */
+    Report(Probe... probes)
+    {
+        this.probes = probes;
+    }
+
+    /**
+     * Fetch probe of a given type.
+     *
+     * @param type Probe type
+     * @param <P>  P
+     * @return Probe
+     */
+    public <P extends Probe> P probe(Class<P> type)
+    {
+        for (Probe probe : probes)
+        {
+            if (type.isInstance(probe))
+            {
+                return type.cast(probe);
+            }
+        }
+        throw new IllegalStateException(
+            String.format("Flow was not measured by %s probe", type.getSimpleName())
+        );
+    }
+
+    /**
+     * Raises AssertionError if 99th percentile of execution latencies is not below the limit.
+     *
+     * @param limit Limit
+     * @param unit  Time unit
+     * @return This report
+     */
+    public Report assertP99Below(long limit, TimeUnit unit)
+    {
+        return assertPercentileBelow(0.99, limit, unit);
+    }
+
+    /**
+     * Raises AssertionError if given percentile of execution latencies is not below the limit.
+     *
+     * @param fraction Fraction between 0 and 1, e.g. 0.99 for 99th percentile
+     * @param limit    Limit
+     * @param unit     Time unit
+     * @return This report
+     */
+    public Report assertPercentileBelow(double fraction, long limit, TimeUnit unit)
+    {
+        probe(Latencies.class).assertPercentileBelow(fraction, limit, unit);
+        return this;
+    }
+
+    /**
+     * Raises AssertionError if fewer than a given number of executions were ever in flight at the same time.
+     *
+     * @param expected Minimal maximum concurrency
+     * @return This report
+     */
+    public Report assertMaxConcurrencyAtLeast(int expected)
+    {
+        probe(Concurrency.class).assertMaxAtLeast(expected);
+        return this;
+    }
+
+    /**
+     * Raises AssertionError if any two executions were in flight at the same time.
+     *
+     * @return This report
+     */
+    public Report assertNeverConcurrent()
+    {
+        probe(Concurrency.class).assertNeverConcurrent();
+        return this;
+    }
+
+    /**
+     * Raises AssertionError if any execution recorded after warm-up allocated more than a given number of bytes.
+     *
+     * @param bytes Limit
+     * @return This report
+     */
+    public Report assertAllocatedAtMost(long bytes)
+    {
+        probe(Allocations.class).assertAtMost(bytes);
+        return this;
+    }
+
+    /**
+     * Raises AssertionError if mean CPU time of executions recorded after warm-up is above the limit.
+     *
+     * @param limit Limit
+     * @param unit  Time unit
+     * @return This report
+     */
+    public Report assertMeanCpuAtMost(long limit, TimeUnit unit)
+    {
+        probe(CpuTime.class).assertMeanAtMost(limit, unit);
+        return this;
+    }
+
+    /**
+     * Summary of every probe measured during the flow, one probe per line.
+     *
+     * @return Summary
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder summary = new StringBuilder("Flow report");
+        for (Probe probe : probes)
+        {
+            summary.append(String.format("%n%s", probe));
+        }
+        return summary.toString();
+    }
+}
@@ -1,10 +1,14 @@
 package hr.com.vgv.asyncunit;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Execution flow results. Used to wait and obtain results from different threads.
@@ -23,6 +27,71 @@ public interface Results
      */
     void addFailure(Throwable throwable);
 
+    /**
+     * Generation of results that executions starting now belong to. Results which are not cyclic have a single
+     * generation.
+     *
+     * @return Generation
+     */
+    default long generation()
+    {
+        return 0;
+    }
+
+    /**
+     * Signal that an execution was handed to another thread and will begin later.
+     */
+    default void submit()
+    {
+    }
+
+    /**
+     * Signal that a submitted execution has ended or will never begin.
+     */
+    default void withdraw()
+    {
+    }
+
+    /**
+     * Signal start of an execution.
+     *
+     * @return Generation of results the execution belongs to
+     */
+    default long begin()
+    {
+        return generation();
+    }
+
+    /**
+     * Signal end of an execution that reports no result, because it failed with a throwable which is not propagated.
+     *
+     * @param generation Generation obtained when execution started
+     */
+    default void abandon(long generation)
+    {
+    }
+
+    /**
+     * Signal successful execution that started in a given generation.
+     *
+     * @param generation Generation obtained when execution started
+     */
+    default void addSuccess(long generation)
+    {
+        addSuccess();
+    }
+
+    /**
+     * Signal failed execution that started in a given generation.
+     *
+     * @param generation Generation obtained when execution started
+     * @param throwable  Failure
+     */
+    default void addFailure(long generation, Throwable throwable)
+    {
+        addFailure(throwable);
+    }
+
     /**
      * Waits for a single execution result. It will wait until interrupted if no result received.
      *
@@ -68,33 +137,136 @@ public interface Results
      */
     void await(long period, TimeUnit timeUnit, int numOfResults) throws InterruptedException;
 
+    /**
+     * Asynchronously waits until given number of execution results are obtained. Returned future is completed by the
+     * thread that delivers the final result, or exceptionally with AssertionError by a shared timer after period expires.
+     * Period of zero means the future never expires.
+     *
+     * @param period       Time timeout
+     * @param timeUnit     Time unit
+     * @param numOfResults Number of expected thread executions
+     * @return Future completed when results are obtained
+     */
+    CompletableFuture<Void> awaitAsync(long period, TimeUnit timeUnit, int numOfResults);
 
     /**
      * Execution flow results synced by semaphore. It can receive execution results from different threads and wait until all
-     * executions are received or until timeout expires.
+     * executions are received or until timeout expires. In fail-fast mode the awaiting thread returns as soon as the first
+     * failure is received.
+     * <p>
+     * Fail-fast await may return while executions of its round are still running. In fail-fast mode every round is
+     * therefore a generation, and results of executions that started in a finished round are dropped instead of being
+     * counted in the next one.
      *
      * @author Vedran Vatavuk
      */
     class Synced implements Results
     {
+        /**
+         * Permits released on the first failure in fail-fast mode. Large enough to satisfy any awaited number of
+         * results while leaving room for late signals before the semaphore is replaced.
+         */
+        private static final int FAIL_FAST_PERMITS = Integer.MAX_VALUE / 2;
 
-        private final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        private final Failures errors;
 
         private final AtomicBoolean waiting = new AtomicBoolean(false);
 
-        private Semaphore semaphore = new Semaphore(0);
+        private final AtomicInteger reporting = new AtomicInteger();
+
+        private final AtomicReference<Pending> pending = new AtomicReference<>();
+
+        private final boolean failFast;
+
+        private volatile Round round = new Round(0);
+
+        public Synced()
+        {
+            this(false);
+        }
+
+        /**
+         * Ctor.
+         *
+         * @param failFast Wake the awaiting thread on the first failure instead of waiting for all results
+         */
+        public Synced(boolean failFast)
+        {
+            this(failFast, Failures.SAMPLES);
+        }
+
+        /**
+         * Ctor.
+         *
+         * @param failFast Wake the awaiting thread on the first failure instead of waiting for all results
+         * @param samples  Number of failures kept in full, further failures are only counted
+         */
+        public Synced(boolean failFast, int samples)
+        {
+            this.failFast = failFast;
+            this.errors = new Failures(samples);
+        }
+
+        @Override
+        public final long generation()
+        {
+            return round.generation;
+        }
 
         @Override
         public final void addSuccess()
         {
-            semaphore.release();
+            round.semaphore.release();
+            signal();
         }
 
         @Override
         public final void addFailure(Throwable throwable)
         {
-            errors.add(throwable);
-            semaphore.release();
+            addFailure(generation(), throwable);
+        }
+
+        @Override
+        public final void addSuccess(long generation)
+        {
+            Round current = round;
+            if (current.generation == generation)
+            {
+                current.semaphore.release();
+                signal();
+            }
+        }
+
+        @Override
+        public final void addFailure(long generation, Throwable throwable)
+        {
+            boolean counted;
+            reporting.incrementAndGet();
+            try
+            {
+                Round current = round;
+                counted = current.generation == generation;
+                if (counted)
+                {
+                    errors.add(throwable);
+                    if (failFast && current.failed.compareAndSet(false, true))
+                    {
+                        current.semaphore.release(FAIL_FAST_PERMITS);
+                    }
+                    else
+                    {
+                        current.semaphore.release();
+                    }
+                }
+            }
+            finally
+            {
+                reporting.decrementAndGet();
+            }
+            if (counted)
+            {
+                signal();
+            }
         }
 
         @Override
@@ -135,6 +307,9 @@ public interface Results
                 }
                 waiting.set(true);
             }
+            Object event = FlightRecorder.awaiting();
+            Semaphore semaphore = round.semaphore;
+            long delivered = 0;
             try
             {
                 if (period == 0)
@@ -145,15 +320,83 @@ public interface Results
                 {
                     throw new AssertionError(notEnoughExecutions(numOfResults));
                 }
+                delivered = numOfResults;
             }
             finally
             {
-                semaphore = new Semaphore(0);
+                FlightRecorder.awaited(
+                    event, numOfResults, delivered + semaphore.availablePermits(), errors.count()
+                );
+                advance();
                 waiting.set(false);
                 throwOnError();
             }
         }
 
+        @Override
+        public final CompletableFuture<Void> awaitAsync(long period, TimeUnit timeUnit, int numOfResults)
+        {
+            synchronized (this)
+            {
+                if (waiting.get())
+                {
+                    IllegalStateException exception = new IllegalStateException(
+                        "Cannot wait for results, some other thread is already awaiting.");
+                    errors.add(exception);
+                    return CompletableFuture.completedFuture(null);
+                }
+                waiting.set(true);
+            }
+            Pending await = new Pending(numOfResults, numOfResults);
+            pending.set(await);
+            await.expireAfter(period, timeUnit, () -> expire(await));
+            signal();
+            return await.future;
+        }
+
+        /**
+         * Completes pending asynchronous await if expected number of results is available.
+         */
+        private void signal()
+        {
+            Pending await = pending.get();
+            if (await != null && round.semaphore.tryAcquire(await.expected) && pending.compareAndSet(await, null))
+            {
+                finish(await, null);
+            }
+        }
+
+        /**
+         * Completes pending asynchronous await with an error after its period expires.
+         *
+         * @param await Pending await
+         */
+        private void expire(Pending await)
+        {
+            if (pending.compareAndSet(await, null))
+            {
+                finish(await, new AssertionError(notEnoughExecutions(await.expected)));
+            }
+        }
+
+        /**
+         * Finishes asynchronous await. Received errors take precedence over the given one, as in blocking await.
+         *
+         * @param await Pending await
+         * @param error Error or null
+         */
+        private void finish(Pending await, Throwable error)
+        {
+            advance();
+            waiting.set(false);
+            Throwable failure = errors.drain();
+            if (failure == null)
+            {
+                failure = error;
+            }
+            await.finish(failure);
+        }
+
         /**
          * Constructs error message.
          *
@@ -163,25 +406,1098 @@ public interface Results
         private String notEnoughExecutions(int expected)
         {
             return String.format(
-                "Number of flow executions was %d instead of %d", semaphore.availablePermits(), expected
+                "Number of flow executions was %d instead of %d", round.semaphore.availablePermits(), expected
             );
         }
 
         /**
-         * Throws throwable if any of threads ended with an exception.
+         * Starts the next round with no received results, then waits until failures counted in the finished round
+         * are added to errors. In fail-fast mode the next round is a new generation.
+         */
+        private void advance()
+        {
+            Round current = round;
+            round = new Round(failFast ? current.generation + 1 : current.generation);
+            while (reporting.get() != 0)
+            {
+                Thread.yield();
+            }
+        }
+
+        /**
+         * Throws throwable if any of threads ended with an exception. If more than one thread failed, throws an
+         * AssertionError summarizing all failures, caused by the first one.
          */
         private void throwOnError()
         {
+            Throwable error = errors.drain();
+            if (error != null)
+            {
+                sneakyThrow(error);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <E extends Throwable> void sneakyThrow(Throwable e) throws E
+        {
+            throw (E) e;
+        }
+
+        /**
+         * Results of a single await round.
+         */
+        private static final class Round
+        {
+            private final long generation;
+
+            private final Semaphore semaphore = new Semaphore(0);
+
+            private final AtomicBoolean failed = new AtomicBoolean(false);
+
+            private Round(long generation)
+            {
+                this.generation = generation;
+            }
+        }
+    }
+
+    /**
+     * Execution flow results counted in striped cells. Signaling threads increment their own cell instead of a single
+     * shared counter, so a high number of threads finishing at the same time does not contend on one memory word. The
+     * awaiting thread is woken only when the expected number of results may have been reached, or on the first failure
+     * in fail-fast mode.
+     * <p>
+     * Summing the cells scans all of them, so signaling threads check the target only once the await is armed, when
+     * few enough results are missing. Until then the awaiting thread, or the shared timer for asynchronous await, polls
+     * the sum periodically and arms the await once it gets near the target.
+     * <p>
+     * Fail-fast await may return while executions of its round are still running. In fail-fast mode every round is
+     * therefore a generation counted in its own cells, and results of executions that started in a finished round are
+     * dropped instead of being counted in the next one.
+     *
+     * @author Vedran Vatavuk
+     */
+    class Striped implements Results
+    {
+        /**
+         * Number of missing results at which signaling threads start checking the target.
+         */
+        private static final long NEAR = 64;
+
+        /**
+         * Period of polling the sum while await is not armed, in nanoseconds.
+         */
+        private static final long POLL = TimeUnit.MILLISECONDS.toNanos(1);
+
+        private final Failures errors;
+
+        private final AtomicBoolean waiting = new AtomicBoolean(false);
+
+        private final AtomicInteger reporting = new AtomicInteger();
+
+        private final boolean failFast;
+
+        private volatile boolean armed;
+
+        private volatile long target = Long.MAX_VALUE;
+
+        private volatile Thread waiter;
+
+        private final AtomicReference<Pending> pending = new AtomicReference<>();
+
+        private volatile Round round = new Round(0);
+
+        private long consumed;
+
+        public Striped()
+        {
+            this(false);
+        }
+
+        /**
+         * Ctor.
+         *
+         * @param failFast Wake the awaiting thread on the first failure instead of waiting for all results
+         */
+        public Striped(boolean failFast)
+        {
+            this(failFast, Failures.SAMPLES);
+        }
+
+        /**
+         * Ctor.
+         *
+         * @param failFast Wake the awaiting thread on the first failure instead of waiting for all results
+         * @param samples  Number of failures kept in full, further failures are only counted
+         */
+        public Striped(boolean failFast, int samples)
+        {
+            this.failFast = failFast;
+            this.errors = new Failures(samples);
+        }
+
+        @Override
+        public final long generation()
+        {
+            return round.generation;
+        }
+
+        @Override
+        public final void addSuccess()
+        {
+            round.received.increment();
+            signal();
+        }
+
+        @Override
+        public final void addFailure(Throwable throwable)
+        {
+            addFailure(generation(), throwable);
+        }
+
+        @Override
+        public final void addSuccess(long generation)
+        {
+            Round current = round;
+            if (current.generation == generation)
+            {
+                current.received.increment();
+                signal();
+            }
+        }
+
+        @Override
+        public final void addFailure(long generation, Throwable throwable)
+        {
+            boolean counted;
+            reporting.incrementAndGet();
             try
             {
-                if (!errors.isEmpty())
+                Round current = round;
+                counted = current.generation == generation;
+                if (counted)
                 {
-                    sneakyThrow(errors.peek());
+                    errors.add(throwable);
+                    if (failFast)
+                    {
+                        current.failed = true;
+                    }
+                    current.received.increment();
                 }
             }
             finally
             {
-                errors.clear();
+                reporting.decrementAndGet();
+            }
+            if (counted)
+            {
+                signal();
+            }
+        }
+
+        @Override
+        public final void await() throws InterruptedException
+        {
+            await(0);
+        }
+
+        @Override
+        public final void await(long period) throws InterruptedException
+        {
+            await(period, TimeUnit.MILLISECONDS, 1);
+        }
+
+        @Override
+        public final void await(long period, TimeUnit timeUnit) throws InterruptedException
+        {
+            await(period, timeUnit, 1);
+        }
+
+        @Override
+        public final void await(long period, int numOfResults) throws InterruptedException
+        {
+            await(period, TimeUnit.MILLISECONDS, numOfResults);
+        }
+
+        @Override
+        public final void await(long period, TimeUnit timeUnit, int numOfResults) throws InterruptedException
+        {
+            synchronized (this)
+            {
+                if (waiting.get())
+                {
+                    IllegalStateException exception = new IllegalStateException(
+                        "Cannot wait for results, some other thread is already awaiting.");
+                    errors.add(exception);
+                    return;
+                }
+                waiting.set(true);
+            }
+            Object event = FlightRecorder.awaiting();
+            try
+            {
+                long deadline = System.nanoTime() + timeUnit.toNanos(period);
+                target = consumed + numOfResults;
+                waiter = Thread.currentThread();
+                while (!round.failed)
+                {
+                    long missing = target - round.received.sum();
+                    if (missing <= 0)
+                    {
+                        break;
+                    }
+                    if (!armed && missing <= NEAR)
+                    {
+                        armed = true;
+                        continue;
+                    }
+                    if (Thread.interrupted())
+                    {
+                        throw new InterruptedException();
+                    }
+                    long timeout = armed ? Long.MAX_VALUE : POLL;
+                    if (period != 0)
+                    {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0)
+                        {
+                            throw new AssertionError(notEnoughExecutions(numOfResults));
+                        }
+                        timeout = Math.min(timeout, remaining);
+                    }
+                    if (timeout == Long.MAX_VALUE)
+                    {
+                        LockSupport.park(this);
+                    }
+                    else
+                    {
+                        LockSupport.parkNanos(this, timeout);
+                    }
+                }
+            }
+            finally
+            {
+                FlightRecorder.awaited(event, numOfResults, round.received.sum() - consumed, errors.count());
+                armed = false;
+                waiter = null;
+                target = Long.MAX_VALUE;
+                advance();
+                waiting.set(false);
+                throwOnError();
+            }
+        }
+
+        @Override
+        public final CompletableFuture<Void> awaitAsync(long period, TimeUnit timeUnit, int numOfResults)
+        {
+            synchronized (this)
+            {
+                if (waiting.get())
+                {
+                    IllegalStateException exception = new IllegalStateException(
+                        "Cannot wait for results, some other thread is already awaiting.");
+                    errors.add(exception);
+                    return CompletableFuture.completedFuture(null);
+                }
+                waiting.set(true);
+            }
+            Pending await = new Pending(numOfResults, consumed + numOfResults);
+            pending.set(await);
+            await.expireAfter(period, timeUnit, () -> expire(await));
+            if (!arm(await))
+            {
+                await.pollEvery(POLL, TimeUnit.NANOSECONDS, () -> arm(await));
+            }
+            return await.future;
+        }
+
+        /**
+         * Wakes the awaiting thread or completes pending asynchronous await if expected number of results may have
+         * been reached. Results are summed only once the await is armed.
+         */
+        private void signal()
+        {
+            Round current = round;
+            if (!current.failed && !armed)
+            {
+                return;
+            }
+            Thread thread = waiter;
+            if (thread != null && (current.failed || current.received.sum() >= target))
+            {
+                LockSupport.unpark(thread);
+            }
+            Pending await = pending.get();
+            if (await != null && (current.failed || current.received.sum() >= await.target)
+                && pending.compareAndSet(await, null))
+            {
+                finish(await, null);
+            }
+        }
+
+        /**
+         * Arms pending asynchronous await once few enough results are missing, then checks whether it can finish.
+         *
+         * @param await Pending await
+         * @return True if await got armed or already finished
+         */
+        private boolean arm(Pending await)
+        {
+            if (pending.get() != await)
+            {
+                return true;
+            }
+            if (await.target - round.received.sum() > NEAR)
+            {
+                return false;
+            }
+            armed = true;
+            signal();
+            return true;
+        }
+
+        /**
+         * Completes pending asynchronous await with an error after its period expires.
+         *
+         * @param await Pending await
+         */
+        private void expire(Pending await)
+        {
+            if (pending.compareAndSet(await, null))
+            {
+                finish(await, new AssertionError(notEnoughExecutions(await.expected)));
+            }
+        }
+
+        /**
+         * Finishes asynchronous await. Received errors take precedence over the given one, as in blocking await.
+         *
+         * @param await Pending await
+         * @param error Error or null
+         */
+        private void finish(Pending await, Throwable error)
+        {
+            armed = false;
+            advance();
+            waiting.set(false);
+            Throwable failure = errors.drain();
+            if (failure == null)
+            {
+                failure = error;
+            }
+            await.finish(failure);
+        }
+
+        /**
+         * Starts the next round with no received results, then waits until failures counted in the finished round
+         * are added to errors. In fail-fast mode the next round is a new generation counted in new cells.
+         */
+        private void advance()
+        {
+            Round current = round;
+            if (failFast)
+            {
+                round = new Round(current.generation + 1);
+                consumed = 0;
+            }
+            else
+            {
+                consumed = current.received.sum();
+            }
+            while (reporting.get() != 0)
+            {
+                Thread.yield();
+            }
+        }
+
+        /**
+         * Constructs error message.
+         *
+         * @param expected Expected number of executions
+         * @return Error message
+         */
+        private String notEnoughExecutions(int expected)
+        {
+            return String.format(
+                "Number of flow executions was %d instead of %d", round.received.sum() - consumed, expected
+            );
+        }
+
+        /**
+         * Throws throwable if any of threads ended with an exception. If more than one thread failed, throws an
+         * AssertionError summarizing all failures, caused by the first one.
+         */
+        private void throwOnError()
+        {
+            Throwable error = errors.drain();
+            if (error != null)
+            {
+                sneakyThrow(error);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <E extends Throwable> void sneakyThrow(Throwable e) throws E
+        {
+            throw (E) e;
+        }
+
+        /**
+         * Results of a single await round. Fail-fast failure is flagged before it is counted, so the awaiting thread
+         * woken by the count also sees the flag. The flag belongs to its round, so a failure flagged after the round
+         * finished never fails the next one.
+         */
+        private static final class Round
+        {
+            private final long generation;
+
+            private final LongAdder received = new LongAdder();
+
+            private volatile boolean failed;
+
+            private Round(long generation)
+            {
+                this.generation = generation;
+            }
+        }
+    }
+
+    /**
+     * Cyclic execution flow results, reusable across many await rounds like a {@link java.util.concurrent.Phaser}.
+     * Every round is a generation. Executions are stamped with the generation in which they started, and signals of
+     * executions that started in a finished round are dropped and counted as stale instead of being attributed to the
+     * current round. Generation and number of received results are packed into a single word, so advancing to the
+     * next round resets the count atomically and without allocation. The count takes the low 32 bits, so a round
+     * counts at most 2^32 - 1 results. Further results of the round are not counted, which keeps the count from
+     * overflowing into the generation.
+     *
+     * @author Vedran Vatavuk
+     */
+    class Cyclic implements Results
+    {
+        private static final long COUNT = 0xFFFFFFFFL;
+
+        private final Failures errors;
+
+        private final AtomicBoolean waiting = new AtomicBoolean(false);
+
+        private final AtomicLong state = new AtomicLong();
+
+        private final LongAdder stale = new LongAdder();
+
+        private final AtomicInteger reporting = new AtomicInteger();
+
+        private final AtomicReference<Pending> pending = new AtomicReference<>();
+
+        private final boolean failFast;
+
+        private volatile long failed = -1;
+
+        private volatile long target = Long.MAX_VALUE;
+
+        private volatile Thread waiter;
+
+        public Cyclic()
+        {
+            this(false);
+        }
+
+        /**
+         * Ctor.
+         *
+         * @param failFast Wake the awaiting thread on the first failure instead of waiting for all results
+         */
+        public Cyclic(boolean failFast)
+        {
+            this(failFast, Failures.SAMPLES);
+        }
+
+        /**
+         * Ctor.
+         *
+         * @param failFast Wake the awaiting thread on the first failure instead of waiting for all results
+         * @param samples  Number of failures kept in full, further failures are only counted
+         */
+        public Cyclic(boolean failFast, int samples)
+        {
+            this.failFast = failFast;
+            this.errors = new Failures(samples);
+        }
+
+        @Override
+        public final long generation()
+        {
+            return state.get() >>> 32;
+        }
+
+        /**
+         * Number of signals dropped because their execution started in an already finished generation.
+         *
+         * @return Stale signals
+         */
+        public final long stale()
+        {
+            return stale.sum();
+        }
+
+        @Override
+        public final void addSuccess()
+        {
+            addSuccess(generation());
+        }
+
+        @Override
+        public final void addFailure(Throwable throwable)
+        {
+            addFailure(generation(), throwable);
+        }
+
+        @Override
+        public final void addSuccess(long generation)
+        {
+            if (arrive(generation))
+            {
+                signal();
+            }
+        }
+
+        @Override
+        public final void addFailure(long generation, Throwable throwable)
+        {
+            boolean counted;
+            reporting.incrementAndGet();
+            try
+            {
+                counted = arrive(generation);
+                if (counted)
+                {
+                    errors.add(throwable);
+                    if (failFast)
+                    {
+                        failed = generation;
+                    }
+                }
+            }
+            finally
+            {
+                reporting.decrementAndGet();
+            }
+            if (counted)
+            {
+                signal();
+            }
+        }
+
+        @Override
+        public final void await() throws InterruptedException
+        {
+            await(0);
+        }
+
+        @Override
+        public final void await(long period) throws InterruptedException
+        {
+            await(period, TimeUnit.MILLISECONDS, 1);
+        }
+
+        @Override
+        public final void await(long period, TimeUnit timeUnit) throws InterruptedException
+        {
+            await(period, timeUnit, 1);
+        }
+
+        @Override
+        public final void await(long period, int numOfResults) throws InterruptedException
+        {
+            await(period, TimeUnit.MILLISECONDS, numOfResults);
+        }
+
+        @Override
+        public final void await(long period, TimeUnit timeUnit, int numOfResults) throws InterruptedException
+        {
+            synchronized (this)
+            {
+                if (waiting.get())
+                {
+                    IllegalStateException exception = new IllegalStateException(
+                        "Cannot wait for results, some other thread is already awaiting.");
+                    errors.add(exception);
+                    return;
+                }
+                waiting.set(true);
+            }
+            Object event = FlightRecorder.awaiting();
+            try
+            {
+                long deadline = System.nanoTime() + timeUnit.toNanos(period);
+                target = numOfResults;
+                waiter = Thread.currentThread();
+                while (!failed() && received() < numOfResults)
+                {
+                    if (Thread.interrupted())
+                    {
+                        throw new InterruptedException();
+                    }
+                    if (period == 0)
+                    {
+                        LockSupport.park(this);
+                    }
+                    else
+                    {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0)
+                        {
+                            throw new AssertionError(notEnoughExecutions(numOfResults));
+                        }
+                        LockSupport.parkNanos(this, remaining);
+                    }
+                }
+            }
+            finally
+            {
+                FlightRecorder.awaited(event, numOfResults, received(), errors.count());
+                waiter = null;
+                target = Long.MAX_VALUE;
+                advance();
+                settle();
+                waiting.set(false);
+                throwOnError();
+            }
+        }
+
+        @Override
+        public final CompletableFuture<Void> awaitAsync(long period, TimeUnit timeUnit, int numOfResults)
+        {
+            synchronized (this)
+            {
+                if (waiting.get())
+                {
+                    IllegalStateException exception = new IllegalStateException(
+                        "Cannot wait for results, some other thread is already awaiting.");
+                    errors.add(exception);
+                    return CompletableFuture.completedFuture(null);
+                }
+                waiting.set(true);
+            }
+            Pending await = new Pending(numOfResults, numOfResults);
+            pending.set(await);
+            await.expireAfter(period, timeUnit, () -> expire(await));
+            signal();
+            return await.future;
+        }
+
+        /**
+         * Counts result if it belongs to the current generation, otherwise counts it as stale.
+         *
+         * @param generation Generation of execution
+         * @return True if result was counted in the current generation
+         */
+        private boolean arrive(long generation)
+        {
+            long current = state.get();
+            while ((current >>> 32) == generation)
+            {
+                if ((current & COUNT) == COUNT || state.compareAndSet(current, current + 1))
+                {
+                    return true;
+                }
+                current = state.get();
+            }
+            stale.increment();
+            return false;
+        }
+
+        /**
+         * Number of results received in the current generation.
+         *
+         * @return Received results
+         */
+        private long received()
+        {
+            return state.get() & COUNT;
+        }
+
+        /**
+         * Check if the current generation failed in fail-fast mode. Failure is stamped with the generation it was
+         * counted in, so a reporter that sets it after the generation finished doesn't fail the next one.
+         *
+         * @return Boolean
+         */
+        private boolean failed()
+        {
+            return failed == generation();
+        }
+
+        /**
+         * Starts the next generation with no received results.
+         */
+        private void advance()
+        {
+            long current = state.get();
+            while (!state.compareAndSet(current, ((current >>> 32) + 1) << 32))
+            {
+                current = state.get();
+            }
+        }
+
+        /**
+         * Waits until failures counted in a finished generation are added to errors. Failure is counted before it is
+         * added, so the awaiting thread may wake up in between.
+         */
+        private void settle()
+        {
+            while (reporting.get() != 0)
+            {
+                Thread.yield();
+            }
+        }
+
+        /**
+         * Wakes the awaiting thread or completes pending asynchronous await if expected number of results may have
+         * been reached.
+         */
+        private void signal()
+        {
+            Thread thread = waiter;
+            if (thread != null && (failed() || received() >= target))
+            {
+                LockSupport.unpark(thread);
+            }
+            Pending await = pending.get();
+            if (await != null && (failed() || received() >= await.target) && pending.compareAndSet(await, null))
+            {
+                finish(await, null);
+            }
+        }
+
+        /**
+         * Completes pending asynchronous await with an error after its period expires.
+         *
+         * @param await Pending await
+         */
+        private void expire(Pending await)
+        {
+            if (pending.compareAndSet(await, null))
+            {
+                finish(await, new AssertionError(notEnoughExecutions(await.expected)));
+            }
+        }
+
+        /**
+         * Finishes asynchronous await. Received errors take precedence over the given one, as in blocking await.
+         *
+         * @param await Pending await
+         * @param error Error or null
+         */
+        private void finish(Pending await, Throwable error)
+        {
+            advance();
+            settle();
+            waiting.set(false);
+            Throwable failure = errors.drain();
+            if (failure == null)
+            {
+                failure = error;
+            }
+            await.finish(failure);
+        }
+
+        /**
+         * Constructs error message.
+         *
+         * @param expected Expected number of executions
+         * @return Error message
+         */
+        private String notEnoughExecutions(int expected)
+        {
+            return String.format(
+                "Number of flow executions was %d instead of %d", received(), expected
+            );
+        }
+
+        /**
+         * Throws throwable if any of threads ended with an exception. If more than one thread failed, throws an
+         * AssertionError summarizing all failures, caused by the first one.
+         */
+        private void throwOnError()
+        {
+            Throwable error = errors.drain();
+            if (error != null)
+            {
+                sneakyThrow(error);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <E extends Throwable> void sneakyThrow(Throwable e) throws E
+        {
+            throw (E) e;
+        }
+    }
+
+    /**
+     * Execution flow results awaited in virtual time of a {@link VirtualScheduler}. The awaiting thread runs scheduled
+     * tasks itself. While prepared executions are running on other threads it waits for them in real time, and once all
+     * of them are idle it advances the virtual clock straight to the next scheduled task. Await period is measured on
+     * the virtual clock, so a flow waiting for a 30 second backoff finishes as soon as the backoff task has run.
+     * <p>
+     * Executions submitted to an executor wrapped by the flow are counted from their submission, so the clock doesn't
+     * pass a deadline while they wait in the queue. Other prepared executions are counted from their start, so work
+     * handed to a thread by other means should be awaited only once it has started.
+     *
+     * @author Vedran Vatavuk
+     */
+    class Virtual implements Results
+    {
+        /**
+         * Real time pause while prepared executions are running on other threads, in nanoseconds.
+         */
+        private static final long PAUSE = TimeUnit.MICROSECONDS.toNanos(100);
+
+        private final VirtualScheduler scheduler;
+
+        private final Failures errors;
+
+        private final AtomicBoolean waiting = new AtomicBoolean(false);
+
+        private final AtomicLong received = new AtomicLong();
+
+        private final AtomicLong running = new AtomicLong();
+
+        private final AtomicLong submitted = new AtomicLong();
+
+        /**
+         * Ctor.
+         *
+         * @param scheduler Scheduler whose clock measures await periods
+         */
+        public Virtual(VirtualScheduler scheduler)
+        {
+            this(scheduler, Failures.SAMPLES);
+        }
+
+        /**
+         * Ctor.
+         *
+         * @param scheduler Scheduler whose clock measures await periods
+         * @param samples   Number of failures kept in full, further failures are only counted
+         */
+        public Virtual(VirtualScheduler scheduler, int samples)
+        {
+            this.scheduler = scheduler;
+            this.errors = new Failures(samples);
+        }
+
+        @Override
+        public final void submit()
+        {
+            submitted.incrementAndGet();
+        }
+
+        @Override
+        public final void withdraw()
+        {
+            submitted.decrementAndGet();
+        }
+
+        @Override
+        public final long begin()
+        {
+            running.incrementAndGet();
+            return generation();
+        }
+
+        @Override
+        public final void abandon(long generation)
+        {
+            running.decrementAndGet();
+        }
+
+        @Override
+        public final void addSuccess()
+        {
+            received.incrementAndGet();
+        }
+
+        @Override
+        public final void addFailure(Throwable throwable)
+        {
+            errors.add(throwable);
+            received.incrementAndGet();
+        }
+
+        @Override
+        public final void addSuccess(long generation)
+        {
+            addSuccess();
+            running.decrementAndGet();
+        }
+
+        @Override
+        public final void addFailure(long generation, Throwable throwable)
+        {
+            addFailure(throwable);
+            running.decrementAndGet();
+        }
+
+        @Override
+        public final void await() throws InterruptedException
+        {
+            await(0);
+        }
+
+        @Override
+        public final void await(long period) throws InterruptedException
+        {
+            await(period, TimeUnit.MILLISECONDS, 1);
+        }
+
+        @Override
+        public final void await(long period, TimeUnit timeUnit) throws InterruptedException
+        {
+            await(period, timeUnit, 1);
+        }
+
+        @Override
+        public final void await(long period, int numOfResults) throws InterruptedException
+        {
+            await(period, TimeUnit.MILLISECONDS, numOfResults);
+        }
+
+        @Override
+        public final void await(long period, TimeUnit timeUnit, int numOfResults) throws InterruptedException
+        {
+            synchronized (this)
+            {
+                if (waiting.get())
+                {
+                    IllegalStateException exception = new IllegalStateException(
+                        "Cannot wait for results, some other thread is already awaiting.");
+                    errors.add(exception);
+                    return;
+                }
+                waiting.set(true);
+            }
+            drive(period, timeUnit, numOfResults);
+        }
+
+        /**
+         * Waits on a driver thread, which runs scheduled tasks like {@link #await(long, TimeUnit, int)}. Returned
+         * future is completed by the driver thread, so the calling thread is never blocked.
+         *
+         * @param period       Virtual time period
+         * @param timeUnit     Time unit
+         * @param numOfResults Number of expected thread executions
+         * @return Future completed when results are obtained
+         */
+        @Override
+        public final CompletableFuture<Void> awaitAsync(long period, TimeUnit timeUnit, int numOfResults)
+        {
+            synchronized (this)
+            {
+                if (waiting.get())
+                {
+                    IllegalStateException exception = new IllegalStateException(
+                        "Cannot wait for results, some other thread is already awaiting.");
+                    errors.add(exception);
+                    return CompletableFuture.completedFuture(null);
+                }
+                waiting.set(true);
+            }
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            Thread driver = new Thread(
+                () -> {
+                    try
+                    {
+                        drive(period, timeUnit, numOfResults);
+                        future.complete(null);
+                    }
+                    catch (Throwable throwable)
+                    {
+                        future.completeExceptionally(throwable);
+                    }
+                },
+                "asyncunit-virtual-clock"
+            );
+            driver.setDaemon(true);
+            driver.start();
+            return future;
+        }
+
+        /**
+         * Runs scheduled tasks and advances the virtual clock until expected number of results is received or period
+         * of virtual time expires.
+         *
+         * @param period       Virtual time period
+         * @param timeUnit     Time unit
+         * @param numOfResults Number of expected thread executions
+         * @throws InterruptedException If interrupted
+         */
+        private void drive(long period, TimeUnit timeUnit, int numOfResults) throws InterruptedException
+        {
+            Object event = FlightRecorder.awaiting();
+            try
+            {
+                long deadline = period == 0 ? Long.MAX_VALUE : scheduler.nanos() + timeUnit.toNanos(period);
+                while (received.get() < numOfResults)
+                {
+                    if (Thread.interrupted())
+                    {
+                        throw new InterruptedException();
+                    }
+                    if (scheduler.runNext(scheduler.nanos()))
+                    {
+                        continue;
+                    }
+                    if (running.get() > 0 || submitted.get() > 0 || period == 0 && scheduler.scheduled() == 0)
+                    {
+                        LockSupport.parkNanos(PAUSE);
+                        continue;
+                    }
+                    if (received.get() >= numOfResults)
+                    {
+                        break;
+                    }
+                    if (!scheduler.runNext(deadline))
+                    {
+                        scheduler.advance(deadline - scheduler.nanos(), TimeUnit.NANOSECONDS);
+                        throw new AssertionError(notEnoughExecutions(numOfResults));
+                    }
+                }
+            }
+            finally
+            {
+                FlightRecorder.awaited(event, numOfResults, received.get(), errors.count());
+                received.set(0);
+                waiting.set(false);
+                throwOnError();
+            }
+        }
+
+        /**
+         * Constructs error message.
+         *
+         * @param expected Expected number of executions
+         * @return Error message
+         */
+        private String notEnoughExecutions(int expected)
+        {
+            return String.format(
+                "Number of flow executions was %d instead of %d after %d ms of virtual time",
+                received.get(), expected, scheduler.now(TimeUnit.MILLISECONDS)
+            );
+        }
+
+        /**
+         * Throws throwable if any of threads ended with an exception. If more than one thread failed, throws an
+         * AssertionError summarizing all failures, caused by the first one.
+         */
+        private void throwOnError()
+        {
+            Throwable error = errors.drain();
+            if (error != null)
+            {
+                sneakyThrow(error);
             }
         }
 
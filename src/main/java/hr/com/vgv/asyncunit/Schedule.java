@@ -0,0 +1,325 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cooperative scheduler of a single interleaving. Every action runs on its own thread, but only one of them runs at a
+ * time. At each yield point the running thread asks the scheduler which thread continues, so the whole interleaving is
+ * determined by the seed of the schedule and can be replayed.
+ * <p>
+ * Yield points are the start and the end of every execution prepared by a flow measured with this schedule, and
+ * explicit {@link AsyncFlow#yieldPoint()} calls. With unbounded preemptions every yield point picks a random thread.
+ * With bounded preemptions the running thread keeps running unless the scheduler decides to preempt it, which happens
+ * at most a given number of times per schedule.
+ *
+ * @author Vedran Vatavuk
+ */
+final class Schedule implements Probe
+{
+    /**
+     * Number of explorations in progress. Yield points are skipped without a thread-local lookup when there are none.
+     */
+    static final AtomicInteger EXPLORING = new AtomicInteger();
+
+    /**
+     * One in this many yield points preempts the running thread while preemption budget lasts.
+     */
+    private static final int PREEMPTION_ODDS = 4;
+
+    private static final ThreadLocal<Actor> ACTOR = new ThreadLocal<>();
+
+    private final Random random;
+
+    private final boolean bounded;
+
+    private int preemptions;
+
+    private boolean[] done;
+
+    private int remaining;
+
+    private int current = -1;
+
+    private long steps;
+
+    private boolean aborted;
+
+    private Throwable failure;
+
+    /**
+     * Ctor.
+     *
+     * @param seed        Seed of the schedule
+     * @param preemptions Maximum number of preemptions, or negative for random choice at every yield point
+     */
+    Schedule(long seed, int preemptions)
+    {
+        this.random = new Random(seed);
+        this.bounded = preemptions >= 0;
+        this.preemptions = preemptions;
+    }
+
+    /**
+     * Yields control if the current thread runs an action of a schedule.
+     */
+    static void yieldCurrent()
+    {
+        if (EXPLORING.get() > 0)
+        {
+            Actor actor = ACTOR.get();
+            if (actor != null)
+            {
+                actor.schedule.yieldPoint(actor.index);
+            }
+        }
+    }
+
+    @Override
+    public long enter()
+    {
+        yieldCurrent();
+        return 0;
+    }
+
+    @Override
+    public void exit(long token)
+    {
+        yieldCurrent();
+    }
+
+    /**
+     * Runs actions, one thread at a time, until all of them finish.
+     *
+     * @param actions Actions
+     * @param blocked Period without progress after which schedule is aborted
+     * @param unit    Time unit
+     * @return False if schedule was aborted because a thread blocked outside of yield points
+     * @throws InterruptedException If interrupted
+     */
+    boolean run(Runnable[] actions, long blocked, TimeUnit unit) throws InterruptedException
+    {
+        Thread[] threads = new Thread[actions.length];
+        synchronized (this)
+        {
+            done = new boolean[actions.length];
+            remaining = actions.length;
+        }
+        for (int idx = 0; idx < actions.length; idx++)
+        {
+            Actor actor = new Actor(this, idx);
+            Runnable action = actions[idx];
+            threads[idx] = new Thread(() -> {
+                ACTOR.set(actor);
+                try
+                {
+                    if (turn(actor.index))
+                    {
+                        action.run();
+                    }
+                }
+                catch (Throwable throwable)
+                {
+                    fail(throwable);
+                }
+                finally
+                {
+                    ACTOR.remove();
+                    finish(actor.index);
+                }
+            }, "asyncunit-schedule-" + idx);
+            threads[idx].setDaemon(true);
+            threads[idx].start();
+        }
+        boolean completed = await(unit.toMillis(blocked));
+        if (!completed)
+        {
+            for (Thread thread : threads)
+            {
+                thread.interrupt();
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * First throwable thrown by an action, or null if all actions finished normally.
+     *
+     * @return Throwable
+     */
+    synchronized Throwable failure()
+    {
+        return failure;
+    }
+
+    /**
+     * Records throwable thrown by an action. Only the first one is kept.
+     *
+     * @param throwable Throwable
+     */
+    private synchronized void fail(Throwable throwable)
+    {
+        if (failure == null)
+        {
+            failure = throwable;
+        }
+    }
+
+    /**
+     * Yield point of a running thread.
+     *
+     * @param self Index of the running thread
+     */
+    private synchronized void yieldPoint(int self)
+    {
+        if (aborted)
+        {
+            return;
+        }
+        steps += 1;
+        int next = choose(self, false);
+        if (next != self)
+        {
+            current = next;
+            notifyAll();
+            try
+            {
+                turn(self);
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits until it's the turn of a given thread.
+     *
+     * @param self Index of the thread
+     * @return False if schedule was aborted
+     * @throws InterruptedException If interrupted
+     */
+    private synchronized boolean turn(int self) throws InterruptedException
+    {
+        if (current < 0)
+        {
+            current = choose(-1, true);
+            notifyAll();
+        }
+        while (current != self && !aborted)
+        {
+            wait();
+        }
+        return !aborted;
+    }
+
+    /**
+     * Marks thread as finished and passes control to the next one.
+     *
+     * @param self Index of the thread
+     */
+    private synchronized void finish(int self)
+    {
+        done[self] = true;
+        remaining -= 1;
+        steps += 1;
+        if (remaining > 0 && current == self)
+        {
+            current = choose(self, true);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits until all threads finish or no progress is made for a given period.
+     *
+     * @param blocked Period without progress in milliseconds
+     * @return False if schedule was aborted
+     * @throws InterruptedException If interrupted
+     */
+    private synchronized boolean await(long blocked) throws InterruptedException
+    {
+        long progress = -1;
+        while (remaining > 0)
+        {
+            if (progress == steps)
+            {
+                aborted = true;
+                notifyAll();
+                return false;
+            }
+            progress = steps;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blocked);
+            long left = blocked;
+            while (remaining > 0 && progress == steps && left > 0)
+            {
+                wait(left);
+                left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Chooses the next running thread.
+     *
+     * @param self     Index of the running thread
+     * @param finished Whether the running thread can't continue
+     * @return Index of the next running thread
+     */
+    private int choose(int self, boolean finished)
+    {
+        if (!finished && bounded)
+        {
+            if (preemptions > 0 && remaining > 1 && random.nextInt(PREEMPTION_ODDS) == 0)
+            {
+                preemptions -= 1;
+                return pick(self);
+            }
+            return self;
+        }
+        return pick(finished ? self : -1);
+    }
+
+    /**
+     * Picks random unfinished thread.
+     *
+     * @param excluded Index of thread that can't be picked or -1
+     * @return Index of the thread
+     */
+    private int pick(int excluded)
+    {
+        int candidates = remaining - (excluded >= 0 && !done[excluded] ? 1 : 0);
+        int target = random.nextInt(candidates);
+        for (int idx = 0; idx < done.length; idx++)
+        {
+            if (!done[idx] && idx != excluded)
+            {
+                if (target == 0)
+                {
+                    return idx;
+                }
+                target -= 1;
+            }
+        }
+        throw new IllegalStateException("No thread to schedule");
+    }
+
+    /**
+     * Thread running an action of a schedule.
+     */
+    private static final class Actor
+    {
+        private final Schedule schedule;
+
+        private final int index;
+
+        Actor(Schedule schedule, int index)
+        {
+            this.schedule = schedule;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report of a stress run. Gives throughput, failure count and distribution of invocations between threads, together
+ * with the report of the underlying flow.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class StressReport
+{
+    private final long[] invocations;
+
+    private final long[] failures;
+
+    private final long elapsed;
+
+    private final Report flow;
+
+    /**
+     * Ctor.
+     *
+     * @param invocations Invocations per thread
+     * @param failures    Failed invocations per thread
+     * @param elapsed     Elapsed time in nanoseconds
+     * @param flow        Report of the underlying flow
+     */
+    StressReport(long[] invocations, long[] failures, long elapsed, Report flow)
+    {
+        this.invocations = invocations;
+        this.failures = failures;
+        this.elapsed = elapsed;
+        this.flow = flow;
+    }
+
+    /**
+     * Total number of invocations.
+     *
+     * @return Invocations
+     */
+    public long invocations()
+    {
+        return Arrays.stream(invocations).sum();
+    }
+
+    /**
+     * Total number of failed invocations, including failures that are not propagated by the flow.
+     *
+     * @return Failures
+     */
+    public long failures()
+    {
+        return Arrays.stream(failures).sum();
+    }
+
+    /**
+     * Number of invocations executed by each thread.
+     *
+     * @return Invocations per thread
+     */
+    public long[] distribution()
+    {
+        return invocations.clone();
+    }
+
+    /**
+     * Time elapsed from opening the start gate until all threads finished.
+     *
+     * @param unit Time unit
+     * @return Elapsed time
+     */
+    public long elapsed(TimeUnit unit)
+    {
+        return unit.convert(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Invocations per second.
+     *
+     * @return Throughput
+     */
+    public double throughput()
+    {
+        return invocations() * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsed);
+    }
+
+    /**
+     * Report of the underlying flow, e.g. to assert latencies measured by its probes.
+     *
+     * @return Flow report
+     */
+    public Report flow()
+    {
+        return flow;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "%d invocations on %d threads in %d ms (%.0f ops/s), %d failed, per thread %s",
+            invocations(), invocations.length, elapsed(TimeUnit.MILLISECONDS), throughput(), failures(),
+            Arrays.toString(invocations)
+        );
+    }
+}
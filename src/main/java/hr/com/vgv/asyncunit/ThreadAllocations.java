@@ -0,0 +1,37 @@
+package hr.com.vgv.asyncunit;
+
+/**
+ * Allocation counter of the current thread. Sampling it allocates until the sampling code is JIT compiled, so the cost
+ * of sampling has to be measured and subtracted.
+ *
+ * <p>This class is versioned, Java 21 version samples the counter without allocation.
+ *
+ * @author Vedran Vatavuk
+ */
+final class ThreadAllocations
+{
+    private ThreadAllocations()
+    {
+    }
+
+    /**
+     * Check if sampling doesn't allocate, so nothing has to be subtracted.
+     *
+     * @return Boolean
+     */
+    static boolean exact()
+    {
+        return false;
+    }
+
+    /**
+     * Number of bytes allocated so far by the current thread.
+     *
+     * @param threads Thread MXBean
+     * @return Bytes
+     */
+    static long current(com.sun.management.ThreadMXBean threads)
+    {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
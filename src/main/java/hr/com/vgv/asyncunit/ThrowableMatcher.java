@@ -0,0 +1,119 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precompiled matcher of throwable types which should fail an async flow. A throwable matches if its class is equal
+ * to, extends or implements any of the configured types. Decisions are cached per throwable class in a small map owned
+ * by the matcher, so repeated failures of the same type cost a single lookup and the cache goes away with the matcher.
+ * Classes seen after the cache is full are decided on every call.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class ThrowableMatcher
+{
+    /**
+     * Maximum number of cached decisions.
+     */
+    private static final int CACHED = 32;
+
+    /**
+     * Configured base types.
+     */
+    private final Class<?>[] types;
+
+    /**
+     * Matching decisions cached per throwable class.
+     */
+    private final Map<Class<?>, Boolean> decisions = new ConcurrentHashMap<>();
+
+    /**
+     * Ctor.
+     *
+     * @param types Base types
+     */
+    @SafeVarargs
+    public ThrowableMatcher(Class<? extends Throwable>... types)
+    {
+        this.types = new Class<?>[types.length];
+        for (int idx = 0; idx < types.length; idx++)
+        {
+            this.types[idx] = types[idx];
+        }
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param types Base types
+     */
+    public ThrowableMatcher(Collection<? extends Class<?>> types)
+    {
+        this.types = types.toArray(new Class<?>[0]);
+    }
+
+    /**
+     * Check if throwable matches any of the configured types.
+     *
+     * @param throwable Throwable
+     * @return Boolean
+     */
+    public boolean matches(Throwable throwable)
+    {
+        return matches(throwable.getClass());
+    }
+
+    /**
+     * Check if class matches any of the configured types.
+     *
+     * @param type Class
+     * @return Boolean
+     */
+    public boolean matches(Class<?> type)
+    {
+        Boolean decision = decisions.get(type);
+        if (decision == null)
+        {
+            decision = decide(type);
+            if (decisions.size() < CACHED)
+            {
+                decisions.putIfAbsent(type, decision);
+            }
+        }
+        return decision;
+    }
+
+    /**
+     * Check if derived class is equal to, extends or implements base class.
+     *
+     * @param base    Base class
+     * @param derived Derived class
+     * @return Boolean
+     */
+    static boolean related(Class<?> base, Class<?> derived)
+    {
+        return base.isAssignableFrom(derived);
+    }
+
+    /**
+     * Computes matching decision for a class that was not seen before.
+     *
+     * @param type Class
+     * @return Boolean
+     */
+    private Boolean decide(Class<?> type)
+    {
+        for (Class<?> base : types)
+        {
+            if (related(base, type))
+            {
+                return Boolean.TRUE;
+            }
+        }
+        return Boolean.FALSE;
+    }
+}
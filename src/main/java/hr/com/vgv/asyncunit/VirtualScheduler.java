@@ -0,0 +1,430 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Scheduled executor service running on a virtual clock. Tasks never run on their own, they are executed by the thread
+ * that advances the clock, either explicitly with {@link #advance(long, TimeUnit)} or by awaiting a flow with
+ * {@link Results.Virtual} results. Virtual clock jumps straight to the next scheduled task once all prepared work is
+ * idle, so retries, backoffs and timeouts of many seconds finish in milliseconds and always run in the same order.
+ * <p>
+ * Example of usage:
+ * <p>
+ * VirtualScheduler scheduler = new VirtualScheduler();
+ * AsyncFlow.Single flow = new AsyncFlow.Single(new Results.Virtual(scheduler));
+ * scheduler.schedule(flow.prepare(() -&gt; assertTrue(true)), 30, TimeUnit.SECONDS);
+ * flow.await(60_000);
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Vedran Vatavuk
+ */
+public final class VirtualScheduler extends AbstractExecutorService implements ScheduledExecutorService
+{
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+
+    private long now;
+
+    private long sequence;
+
+    private boolean shutdown;
+
+    /**
+     * Current virtual time. Clock starts at zero.
+     *
+     * @param unit Time unit
+     * @return Virtual time
+     */
+    public long now(TimeUnit unit)
+    {
+        return unit.convert(nanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Advances virtual clock by a given period and runs every task scheduled until then on the calling thread.
+     *
+     * @param period Time period
+     * @param unit   Time unit
+     */
+    public void advance(long period, TimeUnit unit)
+    {
+        long target = plus(nanos(), unit.toNanos(period));
+        while (runNext(target))
+        {
+            continue;
+        }
+        synchronized (queue)
+        {
+            now = Math.max(now, target);
+        }
+    }
+
+    /**
+     * Number of scheduled tasks.
+     *
+     * @return Number of tasks
+     */
+    public int scheduled()
+    {
+        synchronized (queue)
+        {
+            return queue.size();
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit)
+    {
+        return enqueue(new Task<Void>(Executors.callable(command, null), unit.toNanos(delay), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit)
+    {
+        return enqueue(new Task<>(callable, unit.toNanos(delay), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit)
+    {
+        if (period <= 0)
+        {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        return enqueue(
+            new Task<Void>(Executors.callable(command, null), unit.toNanos(initialDelay), unit.toNanos(period))
+        );
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit)
+    {
+        if (delay <= 0)
+        {
+            throw new IllegalArgumentException("Delay must be positive");
+        }
+        return enqueue(
+            new Task<Void>(Executors.callable(command, null), unit.toNanos(initialDelay), -unit.toNanos(delay))
+        );
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task)
+    {
+        return schedule(task, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result)
+    {
+        return schedule(Executors.callable(task, result), 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task)
+    {
+        return schedule(task, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+    {
+        return invokeAll(tasks, Long.MAX_VALUE - nanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+    {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks)
+        {
+            futures.add(submit(task));
+        }
+        long deadline = plus(nanos(), unit.toNanos(timeout));
+        for (Future<T> future : futures)
+        {
+            while (!future.isDone() && runNext(deadline))
+            {
+                continue;
+            }
+            future.cancel(false);
+        }
+        return futures;
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws ExecutionException
+    {
+        try
+        {
+            return invokeAny(tasks, Long.MAX_VALUE - nanos(), TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException exception)
+        {
+            throw new ExecutionException(exception);
+        }
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+        throws ExecutionException, TimeoutException
+    {
+        if (tasks.isEmpty())
+        {
+            throw new IllegalArgumentException("No tasks to invoke");
+        }
+        List<Future<T>> futures = invokeAll(tasks, timeout, unit);
+        ExecutionException failure = null;
+        for (Future<T> future : futures)
+        {
+            try
+            {
+                return future.get();
+            }
+            catch (ExecutionException exception)
+            {
+                failure = exception;
+            }
+            catch (CancellationException | InterruptedException exception)
+            {
+                continue;
+            }
+        }
+        if (failure == null)
+        {
+            throw new TimeoutException();
+        }
+        throw failure;
+    }
+
+    @Override
+    public void shutdown()
+    {
+        synchronized (queue)
+        {
+            shutdown = true;
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        synchronized (queue)
+        {
+            shutdown = true;
+            List<Runnable> pending = new ArrayList<>(queue);
+            queue.clear();
+            return pending;
+        }
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        synchronized (queue)
+        {
+            return shutdown;
+        }
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        synchronized (queue)
+        {
+            return shutdown && queue.isEmpty();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+    {
+        advance(timeout, unit);
+        return isTerminated();
+    }
+
+    /**
+     * Current virtual time in nanoseconds.
+     *
+     * @return Virtual time
+     */
+    long nanos()
+    {
+        synchronized (queue)
+        {
+            return now;
+        }
+    }
+
+    /**
+     * Runs the next task scheduled no later than a given time, advancing the clock to it if necessary.
+     *
+     * @param limit Latest virtual time in nanoseconds
+     * @return False if there was no such task
+     */
+    boolean runNext(long limit)
+    {
+        Task<?> task;
+        synchronized (queue)
+        {
+            task = queue.peek();
+            if (task == null || task.time > limit)
+            {
+                return false;
+            }
+            queue.poll();
+            now = Math.max(now, task.time);
+        }
+        task.run();
+        return true;
+    }
+
+    /**
+     * Adds task to the queue.
+     *
+     * @param task Task
+     * @param <V>  V
+     * @return Task
+     */
+    private <V> Task<V> enqueue(Task<V> task)
+    {
+        synchronized (queue)
+        {
+            if (shutdown)
+            {
+                throw new RejectedExecutionException("Virtual scheduler is shut down");
+            }
+            task.time = plus(now, task.time);
+            task.sequence = sequence++;
+            queue.add(task);
+        }
+        return task;
+    }
+
+    /**
+     * Adds a period to a virtual time, saturating at the ends of the clock instead of overflowing.
+     *
+     * @param time   Time in nanoseconds
+     * @param period Period in nanoseconds
+     * @return Time
+     */
+    private static long plus(long time, long period)
+    {
+        long sum = time + period;
+        if (((time ^ sum) & (period ^ sum)) < 0)
+        {
+            return period > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        return sum;
+    }
+
+    /**
+     * Task scheduled on the virtual clock. Tasks due at the same time run in order of scheduling.
+     *
+     * @param <V> V
+     */
+    private final class Task<V> extends FutureTask<V> implements RunnableScheduledFuture<V>
+    {
+        /**
+         * Positive for fixed rate, negative for fixed delay and zero for one-shot tasks.
+         */
+        private final long period;
+
+        private long time;
+
+        private long sequence;
+
+        Task(Callable<V> callable, long delay, long period)
+        {
+            super(callable);
+            this.time = delay;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic()
+        {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return unit.convert(time - nanos(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other)
+        {
+            if (other == this)
+            {
+                return 0;
+            }
+            if (other instanceof Task)
+            {
+                Task<?> task = (Task<?>) other;
+                int order = Long.compare(time, task.time);
+                return order == 0 ? Long.compare(sequence, task.sequence) : order;
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean interrupt)
+        {
+            boolean cancelled = super.cancel(interrupt);
+            if (cancelled)
+            {
+                synchronized (queue)
+                {
+                    queue.remove(this);
+                }
+            }
+            return cancelled;
+        }
+
+        @Override
+        public void run()
+        {
+            if (!isPeriodic())
+            {
+                super.run();
+            }
+            else if (runAndReset())
+            {
+                synchronized (queue)
+                {
+                    if (!shutdown)
+                    {
+                        time = period > 0 ? plus(time, period) : plus(now, -period);
+                        sequence = VirtualScheduler.this.sequence++;
+                        queue.add(this);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package hr.com.vgv.asyncunit;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder events of flow executions and awaits. Events are created only while they are enabled in a running
+ * recording, so prepared executions pay a single enabled check otherwise.
+ * <p>
+ * Java 11 version.
+ *
+ * @author Vedran Vatavuk
+ */
+final class FlightRecorder
+{
+    private FlightRecorder()
+    {
+    }
+
+    /**
+     * Signals start of a prepared execution.
+     *
+     * @return Event in progress or null if events are not recorded
+     */
+    static Object executing()
+    {
+        Execution event = new Execution();
+        if (!event.isEnabled())
+        {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Signals end of a prepared execution.
+     *
+     * @param event   Event returned on start
+     * @param failure Failure or null if execution succeeded
+     */
+    static void executed(Object event, Throwable failure)
+    {
+        if (event != null)
+        {
+            Execution execution = (Execution) event;
+            execution.end();
+            if (execution.shouldCommit())
+            {
+                if (failure != null)
+                {
+                    execution.failure = failure.getClass().getName();
+                }
+                execution.commit();
+            }
+        }
+    }
+
+    /**
+     * Signals start of an await.
+     *
+     * @return Event in progress or null if events are not recorded
+     */
+    static Object awaiting()
+    {
+        Await event = new Await();
+        if (!event.isEnabled())
+        {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Signals end of an await.
+     *
+     * @param event    Event returned on start
+     * @param expected Number of expected results
+     * @param received Number of received results
+     * @param failures Number of failures
+     */
+    static void awaited(Object event, int expected, long received, long failures)
+    {
+        if (event != null)
+        {
+            Await await = (Await) event;
+            await.end();
+            if (await.shouldCommit())
+            {
+                await.expected = expected;
+                await.received = received;
+                await.failures = failures;
+                await.commit();
+            }
+        }
+    }
+
+    /**
+     * Execution of prepared code. Flows can run millions of executions, so the event has to be enabled explicitly and
+     * is recorded without a stack trace.
+     */
+    @Enabled(false)
+    @StackTrace(false)
+    @Name("hr.com.vgv.asyncunit.Execution")
+    @Label("Flow Execution")
+    @Category("AsyncUnit")
+    @Description("Execution of code prepared by an async flow")
+    static final class Execution extends Event
+    {
+        @Label("Failure")
+        @Description("Type of throwable the execution failed with")
+        String failure;
+    }
+
+    /**
+     * Await of flow results.
+     */
+    @Name("hr.com.vgv.asyncunit.Await")
+    @Label("Flow Await")
+    @Category("AsyncUnit")
+    @Description("Thread waiting for results of an async flow")
+    static final class Await extends Event
+    {
+        @Label("Expected")
+        @Description("Number of expected results")
+        int expected;
+
+        @Label("Received")
+        @Description("Number of received results")
+        long received;
+
+        @Label("Failures")
+        @Description("Number of failed executions")
+        long failures;
+    }
+}
@@ -0,0 +1,45 @@
+package hr.com.vgv.asyncunit;
+
+/**
+ * Binding of static flows to threads. Virtual threads inherit the flow of the thread that started them, so code
+ * prepared in tasks of a virtual thread executor or in forks of a structured task scope reports to the flow awaited
+ * by the parent. The parent must use its flow before starting child threads. Platform threads inherit an entry too,
+ * but never use it, and it doesn't keep the flow alive after the parent releases it.
+ *
+ * <p>Java 21 version of this class.
+ *
+ * @author Vedran Vatavuk
+ */
+final class FlowBinding
+{
+    private FlowBinding()
+    {
+    }
+
+    /**
+     * Thread local holding flow entries.
+     *
+     * @return Thread local
+     */
+    static ThreadLocal<FlowRegistry.Entry> local()
+    {
+        return new InheritableThreadLocal<FlowRegistry.Entry>()
+        {
+            @Override
+            protected FlowRegistry.Entry childValue(FlowRegistry.Entry parent)
+            {
+                return parent.inherit();
+            }
+        };
+    }
+
+    /**
+     * Check if the current thread uses inherited flows.
+     *
+     * @return Boolean
+     */
+    static boolean virtual()
+    {
+        return Thread.currentThread().isVirtual();
+    }
+}
@@ -0,0 +1,36 @@
+package hr.com.vgv.asyncunit;
+
+/**
+ * Allocation counter of the current thread, sampled without allocation.
+ *
+ * <p>Java 21 version of this class.
+ *
+ * @author Vedran Vatavuk
+ */
+final class ThreadAllocations
+{
+    private ThreadAllocations()
+    {
+    }
+
+    /**
+     * Check if sampling doesn't allocate, so nothing has to be subtracted.
+     *
+     * @return Boolean
+     */
+    static boolean exact()
+    {
+        return true;
+    }
+
+    /**
+     * Number of bytes allocated so far by the current thread.
+     *
+     * @param threads Thread MXBean
+     * @return Bytes
+     */
+    static long current(com.sun.management.ThreadMXBean threads)
+    {
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,44 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AllocationsTest
+{
+    @Test
+    public void recordsNoAllocationsOfAllocationFreeCode() throws InterruptedException
+    {
+        long[] counter = new long[1];
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new Allocations(10_000));
+        Runnable prepared = flow.prepare((Runnable) () -> counter[0]++);
+
+        for (int i = 0; i < 20_000; i++)
+        {
+            prepared.run();
+        }
+
+        Report report = flow.awaitReport(1000, 20_000).assertAllocatedAtMost(0);
+        assertEquals(10_000, report.probe(Allocations.class).count());
+    }
+
+    @Test
+    public void failsOnAllocationsAboveBudget()
+    {
+        List<long[]> retained = new ArrayList<>();
+        Allocations allocations = new Allocations();
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(allocations);
+
+        flow.prepare((Runnable) () -> retained.add(new long[1024])).run();
+
+        assertThatThrownBy(() -> flow.awaitReport(1000).assertAllocatedAtMost(1024))
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("instead of at most 1024");
+        assertThat(allocations.max()).isGreaterThanOrEqualTo(8 * 1024L);
+    }
+}
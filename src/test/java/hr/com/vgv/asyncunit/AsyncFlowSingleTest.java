@@ -2,10 +2,19 @@ package hr.com.vgv.asyncunit;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.jupiter.api.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AsyncFlowSingleTest
 {
@@ -33,7 +42,133 @@ public class AsyncFlowSingleTest
         assertThrows(AssertionError.class, () -> flow.await(100));
     }
 
+    @Test
+    public void failsFastOnFirstSupportedException() {
+
+        AsyncFlow.Single flow = new AsyncFlow.Single(new Results.Synced(true), IllegalStateException.class);
+
+        for (int i = 0; i < 10; i++) {
+            new Thread(flow.prepare((Runnable) () -> Sleep.now(3_000))).start();
+        }
+        new Thread(flow.prepare((Runnable) () -> {
+            throw new IllegalStateException("");
+        })).start();
+
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(2),
+            () -> assertThrows(IllegalStateException.class, () -> flow.await(30_000, 11))
+        );
+    }
+
+    @Test
+    public void tracksCompletableFutures() throws InterruptedException {
+
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> 1));
+        }
+
+        flow.track(futures);
 
+        flow.await(1000, 1000);
+    }
+
+    @Test
+    public void failsOnExceptionallyCompletedFuture() {
+
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+
+        flow.track(CompletableFuture.runAsync(() -> {
+            throw new IllegalStateException("");
+        }));
+
+        assertThrows(IllegalStateException.class, () -> flow.await(1000));
+    }
+
+    @Test
+    public void failsOnAssertionOfCompletedValue() {
+
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+
+        flow.track(CompletableFuture.supplyAsync(() -> 1), value -> assertEquals(2, (int) value));
+
+        assertThrows(AssertionError.class, () -> flow.await(1000));
+    }
+
+    @Test
+    public void awaitsCheckpointsConcurrently() {
+
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+
+        Runnable ingested = flow.prepare("ingested", () -> assertTrue(true));
+        Runnable flushed = flow.prepare("flushed", () -> assertTrue(true));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            List<Thread> awaiters = new ArrayList<>();
+            List<Throwable> errors = new CopyOnWriteArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread awaiter = new Thread(() -> {
+                    try {
+                        flow.await("ingested", 2000, 100);
+                        flow.await("flushed", 2000, 10);
+                    } catch (Throwable throwable) {
+                        errors.add(throwable);
+                    }
+                });
+                awaiter.start();
+                awaiters.add(awaiter);
+            }
+            for (int i = 0; i < 100; i++) {
+                new Thread(ingested).start();
+            }
+            for (int i = 0; i < 10; i++) {
+                new Thread(flushed).start();
+            }
+            for (Thread awaiter : awaiters) {
+                awaiter.join();
+            }
+            assertTrue(errors.isEmpty());
+        });
+    }
+
+    @Test
+    public void failsOnlyAwaitersOfFailedCheckpoint() throws InterruptedException {
+
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+
+        new Thread(flow.prepare("indexed", () -> {
+            throw new IllegalStateException("");
+        })).start();
+        new Thread(flow.prepare("flushed", () -> assertTrue(true))).start();
+
+        flow.await("flushed", 1000, 1);
+        assertThrows(IllegalStateException.class, () -> flow.await("indexed", 1000, 1));
+        assertThrows(IllegalStateException.class, () -> flow.await("indexed", 1000, 1));
+    }
+
+    @Test
+    public void failsOnCheckpointTimeout() {
+
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+
+        new Thread(flow.prepare("indexed", () -> assertTrue(true))).start();
+
+        AssertionError error = assertThrows(AssertionError.class, () -> flow.await("indexed", 200, 2));
+        assertThat(error.getMessage()).contains("Number of indexed executions was 1 instead of 2");
+    }
+
+    @Test
+    public void keepsCheckpointsApartFromResults() throws InterruptedException {
+
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+
+        new Thread(flow.prepare("indexed", () -> assertTrue(true))).start();
+        new Thread(flow.prepare(() -> assertTrue(true))).start();
+
+        flow.await("indexed", 1000, 1);
+        flow.await(1000, 1);
+    }
 
     private static class MyIOException extends UncheckedIOException
     {
@@ -1,6 +1,10 @@
 package hr.com.vgv.asyncunit;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -10,6 +14,7 @@ import java.util.function.Supplier;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -181,6 +186,156 @@ public class AsyncFlowTest
         assertTrue(flag.get());
     }
 
+    @Test
+    public void awaitsManyFlowsFromSingleThread()
+    {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            AsyncFlow.Single flow = new AsyncFlow.Single();
+            new Thread(flow.prepare((Runnable) Sleep::now)).start();
+            futures.add(flow.awaitAsync(2000, TimeUnit.MILLISECONDS, 1));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    @Test
+    public void allocatesNothingOnExistingFlowLookup() throws InterruptedException
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        AsyncFlow.Single current = AsyncFlow.currentFlow();
+        for (int i = 0; i < 100_000; i++)
+        {
+            AsyncFlow.currentFlow();
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1_000_000; i++)
+        {
+            Assertions.assertSame(current, AsyncFlow.currentFlow());
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        AsyncFlow.prepare(() -> assertTrue(true)).run();
+        AsyncFlow.await();
+        assertThat(allocated).isLessThan(100_000L);
+    }
+
+    @Test
+    public void evictsFlowOfDeadThread() throws InterruptedException
+    {
+        Thread thread = new Thread(() -> AsyncFlow.prepare(() -> assertTrue(true)));
+        thread.start();
+        thread.join();
+        int registered = AsyncFlow.registered();
+
+        AsyncFlow.sweep();
+
+        assertThat(AsyncFlow.registered()).isLessThan(registered);
+    }
+
+    @Test
+    public void releasesFlowOnAwait() throws InterruptedException
+    {
+        AsyncFlow.prepare(() -> assertTrue(true)).run();
+        int registered = AsyncFlow.registered();
+
+        AsyncFlow.await();
+
+        assertThat(AsyncFlow.registered()).isEqualTo(registered - 1);
+    }
+
+    @Test
+    public void replacesIdleFlow() throws InterruptedException
+    {
+        AsyncFlow.evictAfter(200, TimeUnit.MILLISECONDS);
+        try
+        {
+            AsyncFlow.Single stale = AsyncFlow.currentFlow();
+            AsyncFlow.prepare(() -> assertTrue(true));
+            AsyncFlow.sweep();
+            Thread.sleep(300);
+            AsyncFlow.sweep();
+
+            AsyncFlow.Single current = AsyncFlow.currentFlow();
+            current.prepare(() -> assertTrue(true)).run();
+            AsyncFlow.await();
+            Assertions.assertNotSame(stale, current);
+        }
+        finally
+        {
+            AsyncFlow.evictAfter(10, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    public void keepsUsedFlow() throws InterruptedException
+    {
+        AsyncFlow.evictAfter(200, TimeUnit.MILLISECONDS);
+        try
+        {
+            AsyncFlow.Single current = AsyncFlow.currentFlow();
+            for (int i = 0; i < 5; i++)
+            {
+                AsyncFlow.sweep();
+                Thread.sleep(20);
+                AsyncFlow.prepare(() -> assertTrue(true)).run();
+            }
+            Assertions.assertSame(current, AsyncFlow.currentFlow());
+            AsyncFlow.await(1000, 5);
+        }
+        finally
+        {
+            AsyncFlow.evictAfter(10, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    public void keepsFlowWithReportedExecutions() throws InterruptedException
+    {
+        AsyncFlow.evictAfter(200, TimeUnit.MILLISECONDS);
+        try
+        {
+            Runnable flow = AsyncFlow.prepare(() -> assertTrue(true));
+            for (int i = 0; i < 8; i++)
+            {
+                AsyncFlow.sweep();
+                Thread.sleep(50);
+                flow.run();
+            }
+            AsyncFlow.await(1000, 8);
+        }
+        finally
+        {
+            AsyncFlow.evictAfter(10, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    public void failsOnAwaitOfEvictedFlow() throws InterruptedException
+    {
+        AsyncFlow.evictAfter(200, TimeUnit.MILLISECONDS);
+        try
+        {
+            Runnable flow = AsyncFlow.prepare(() -> assertTrue(true));
+            AsyncFlow.sweep();
+            Thread.sleep(300);
+            AsyncFlow.sweep();
+            flow.run();
+
+            assertThatThrownBy(() -> AsyncFlow.await(1000, 1))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("was evicted after being idle");
+            AsyncFlow.prepare(() -> assertTrue(true)).run();
+            AsyncFlow.await();
+        }
+        finally
+        {
+            AsyncFlow.evictAfter(10, TimeUnit.MINUTES);
+        }
+    }
+
     private void sneakyThrow()
     {
         throw new IllegalStateException("");
@@ -0,0 +1,104 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrencyTest
+{
+    @Test
+    public void tracksOverlappingExecutions() throws InterruptedException
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new Concurrency());
+        CountDownLatch overlap = new CountDownLatch(4);
+
+        for (int i = 0; i < 4; i++)
+        {
+            new Thread(flow.prepare((Runnable) () -> {
+                overlap.countDown();
+                try
+                {
+                    overlap.await();
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            })).start();
+        }
+
+        Report report = flow.awaitReport(1000, 4).assertMaxConcurrencyAtLeast(4);
+        Concurrency concurrency = report.probe(Concurrency.class);
+        assertEquals(4, concurrency.max());
+        assertTrue(concurrency.average() > 1);
+    }
+
+    @Test
+    public void failsOnSerializedExecutions()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new Concurrency());
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                single.execute(flow.prepare((Runnable) () -> Sleep.now(1)));
+            }
+
+            assertThatThrownBy(() -> flow.awaitReport(1000, 10).assertMaxConcurrencyAtLeast(2))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("Maximum concurrency was 1 instead of at least 2");
+        }
+        finally
+        {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void passesWhenNeverConcurrent() throws InterruptedException
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new Concurrency());
+        Runnable prepared = flow.prepare((Runnable) () -> Sleep.now(1));
+
+        for (int i = 0; i < 5; i++)
+        {
+            prepared.run();
+        }
+
+        Report report = flow.awaitReport(1000, 5).assertNeverConcurrent();
+        assertTrue(report.probe(Concurrency.class).average() <= 1);
+    }
+
+    @Test
+    public void failsOnConcurrentExecutions()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new Concurrency());
+        CountDownLatch overlap = new CountDownLatch(2);
+
+        for (int i = 0; i < 2; i++)
+        {
+            new Thread(flow.prepare((Runnable) () -> {
+                overlap.countDown();
+                try
+                {
+                    overlap.await();
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            })).start();
+        }
+
+        assertThatThrownBy(() -> flow.awaitReport(1000, 2).assertNeverConcurrent())
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("Executions overlapped, maximum concurrency was 2");
+    }
+}
@@ -0,0 +1,158 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentInvocationTest
+{
+    private static final AtomicLong INVOCATIONS = new AtomicLong();
+
+    private static final Set<String> THREADS = ConcurrentHashMap.newKeySet();
+
+    @AfterAll
+    public static void invokedBodyOfAnnotatedTest()
+    {
+        assertEquals(1100, INVOCATIONS.get());
+        assertEquals(4, THREADS.size());
+    }
+
+    @ConcurrentInvocation(threads = 4, invocations = 1000, warmup = 100)
+    public void invokesBodyConcurrently()
+    {
+        INVOCATIONS.incrementAndGet();
+        THREADS.add(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void publishesThroughputAndLatency() throws Throwable
+    {
+        Map<String, String> entries = new HashMap<>();
+
+        intercept("count", entries);
+
+        assertEquals(1000, Bodies.COUNT.get());
+        assertEquals("500", entries.get("invocations"));
+        assertEquals("0", entries.get("failures"));
+        assertTrue(entries.containsKey("throughput [ops/s]"));
+        assertTrue(entries.containsKey("latency p99 [us]"));
+    }
+
+    @Test
+    public void propagatesFailureOfBody()
+    {
+        Map<String, String> entries = new HashMap<>();
+
+        AssertionError error = assertThrows(AssertionError.class, () -> intercept("fail", entries));
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        assertFalse(entries.containsKey("invocations"));
+    }
+
+    @Test
+    public void proceedsWithTestsWithoutAnnotation() throws Throwable
+    {
+        boolean[] proceeded = new boolean[1];
+
+        new ConcurrentInvocationExtension().interceptTestMethod(
+            () -> {
+                proceeded[0] = true;
+                return null;
+            },
+            context(Bodies.class.getDeclaredMethod("plain")), report(new HashMap<>())
+        );
+
+        assertTrue(proceeded[0]);
+    }
+
+    private static void intercept(String name, Map<String, String> entries) throws Throwable
+    {
+        new ConcurrentInvocationExtension().interceptTestMethod(
+            () -> {
+                throw new AssertionError("Test method invoked directly");
+            },
+            context(Bodies.class.getDeclaredMethod(name)), report(entries)
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ReflectiveInvocationContext<Method> context(Method method)
+    {
+        Object target = new Bodies();
+        return (ReflectiveInvocationContext<Method>) Proxy.newProxyInstance(
+            ReflectiveInvocationContext.class.getClassLoader(),
+            new Class<?>[] {ReflectiveInvocationContext.class},
+            (proxy, called, args) -> {
+                switch (called.getName())
+                {
+                    case "getExecutable":
+                        return method;
+                    case "getArguments":
+                        return Collections.emptyList();
+                    case "getTarget":
+                        return Optional.of(target);
+                    default:
+                        throw new UnsupportedOperationException(called.getName());
+                }
+            }
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ExtensionContext report(Map<String, String> entries)
+    {
+        return (ExtensionContext) Proxy.newProxyInstance(
+            ExtensionContext.class.getClassLoader(),
+            new Class<?>[] {ExtensionContext.class},
+            (proxy, called, args) -> {
+                if ("publishReportEntry".equals(called.getName()) && args.length == 1)
+                {
+                    entries.putAll((Map<String, String>) args[0]);
+                    return null;
+                }
+                throw new UnsupportedOperationException(called.getName());
+            }
+        );
+    }
+
+    /**
+     * Test bodies invoked through the extension directly.
+     */
+    private static final class Bodies
+    {
+        private static final AtomicLong COUNT = new AtomicLong();
+
+        @ConcurrentInvocation(threads = 2, invocations = 500, warmup = 500)
+        void count()
+        {
+            COUNT.incrementAndGet();
+        }
+
+        @ConcurrentInvocation(threads = 2, invocations = 10)
+        void fail()
+        {
+            throw new IllegalStateException("");
+        }
+
+        void plain()
+        {
+            // Invoked by JUnit
+        }
+    }
+}
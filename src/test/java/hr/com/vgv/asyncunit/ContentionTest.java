@@ -0,0 +1,129 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentionTest
+{
+    private final Object lock = new Object();
+
+    @Test
+    public void attributesBlockedExecutionsToMonitor() throws InterruptedException
+    {
+        Contention contention = new Contention(1, TimeUnit.MILLISECONDS);
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(contention);
+        Runnable prepared = flow.prepare((Runnable) () -> {
+            synchronized (lock)
+            {
+                Sleep.now(20);
+            }
+        });
+
+        for (int i = 0; i < 4; i++)
+        {
+            new Thread(prepared).start();
+        }
+
+        Report report = flow.awaitReport(1000, 4);
+        assertThat(contention.blockedCount()).isGreaterThanOrEqualTo(1L);
+        assertThat(contention.blockedTime(TimeUnit.MILLISECONDS)).isGreaterThan(0L);
+        String monitor = contention.monitors().keySet().iterator().next();
+        assertThat(monitor).contains("BLOCKED on java.lang.Object@");
+        assertThat(report.toString()).contains("Contention of 4 executions");
+        assertThat(report.toString()).contains(monitor);
+    }
+
+    @Test
+    public void samplesWhileTimerIsBusy() throws InterruptedException
+    {
+        CountDownLatch busy = new CountDownLatch(1);
+        Pending.TIMER.execute(() -> {
+            try
+            {
+                busy.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try
+        {
+            Contention contention = new Contention(1, TimeUnit.MILLISECONDS);
+            AsyncFlow.Single flow = new AsyncFlow.Single().with(contention);
+            Runnable prepared = flow.prepare((Runnable) () -> {
+                synchronized (lock)
+                {
+                    Sleep.now(20);
+                }
+            });
+            Thread first = new Thread(prepared);
+            Thread second = new Thread(prepared);
+            first.start();
+            second.start();
+            first.join();
+            second.join();
+
+            assertFalse(contention.monitors().isEmpty());
+        }
+        finally
+        {
+            busy.countDown();
+        }
+    }
+
+    @Test
+    public void countsWaits() throws InterruptedException
+    {
+        Contention contention = new Contention();
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(contention);
+
+        flow.prepare((Runnable) () -> Sleep.now(10)).run();
+
+        flow.await(1000);
+        assertEquals(0, contention.blockedCount());
+        assertEquals(1, contention.waitedCount());
+    }
+
+    @Test
+    public void reportsNoContentionOfIndependentExecutions() throws InterruptedException
+    {
+        Contention contention = new Contention();
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(contention);
+
+        for (int i = 0; i < 4; i++)
+        {
+            new Thread(flow.prepare(() -> assertTrue(true))).start();
+        }
+
+        flow.await(1000, 4);
+        assertEquals(0, contention.blockedCount());
+        assertTrue(contention.monitors().isEmpty());
+    }
+
+    @Test
+    public void samplesOnlyUntilAwaitOrClose() throws InterruptedException
+    {
+        Contention contention = new Contention();
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(contention);
+        Runnable prepared = flow.prepare(() -> assertTrue(true));
+        assertFalse(contention.sampling());
+
+        prepared.run();
+        assertTrue(contention.sampling());
+        flow.await(1000);
+        assertFalse(contention.sampling());
+
+        prepared.run();
+        assertTrue(contention.sampling());
+        contention.close();
+        assertFalse(contention.sampling());
+    }
+}
@@ -0,0 +1,58 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CpuTimeTest
+{
+    @Test
+    public void skipsWarmupExecutions() throws InterruptedException
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new CpuTime(3));
+        Runnable prepared = flow.prepare(() -> assertTrue(true));
+
+        for (int i = 0; i < 5; i++)
+        {
+            prepared.run();
+        }
+
+        assertEquals(2, flow.awaitReport(1000, 5).probe(CpuTime.class).count());
+    }
+
+    @Test
+    public void recordsCpuTimeWithoutBlockedTime() throws InterruptedException
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new CpuTime()).with(new Latencies());
+
+        flow.prepare((Runnable) () -> Sleep.now(50)).run();
+
+        Report report = flow.awaitReport(1000).assertMeanCpuAtMost(25, TimeUnit.MILLISECONDS);
+        assertThat(report.probe(Latencies.class).max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50L);
+    }
+
+    @Test
+    public void failsOnCpuTimeAboveBudget()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new CpuTime());
+
+        flow.prepare(() -> {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+            long spins = 0;
+            while (System.nanoTime() < deadline)
+            {
+                spins++;
+            }
+            return spins;
+        }).get();
+
+        assertThatThrownBy(() -> flow.awaitReport(1000).assertMeanCpuAtMost(1, TimeUnit.MILLISECONDS))
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("Mean CPU time was");
+    }
+}
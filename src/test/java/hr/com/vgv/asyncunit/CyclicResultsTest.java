@@ -0,0 +1,84 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CyclicResultsTest extends ResultsTest
+{
+    @Override
+    protected Results results(boolean failFast)
+    {
+        return new Results.Cyclic(failFast);
+    }
+
+    @Test
+    public void reusesFlowAcrossGenerations() throws InterruptedException
+    {
+        Results.Cyclic cyclic = new Results.Cyclic();
+        AsyncFlow.Single flow = new AsyncFlow.Single(cyclic);
+        Runnable prepared = flow.prepare(() -> { });
+
+        for (int round = 0; round < 1000; round++)
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                new Thread(prepared).start();
+            }
+            flow.await(1000, 4);
+        }
+
+        assertEquals(1000, cyclic.generation());
+        assertEquals(0, cyclic.stale());
+    }
+
+    @Test
+    public void dropsSignalsOfFinishedGeneration() throws InterruptedException
+    {
+        Results.Cyclic cyclic = new Results.Cyclic();
+        AsyncFlow.Single flow = new AsyncFlow.Single(cyclic);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread late = new Thread(flow.prepare(() -> awaitLatch(release)));
+        late.start();
+
+        assertThatThrownBy(() -> flow.await(100))
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("Number of flow executions was 0 instead of 1");
+        release.countDown();
+        late.join();
+
+        assertEquals(1, cyclic.stale());
+        assertThatThrownBy(() -> flow.await(100))
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("Number of flow executions was 0 instead of 1");
+    }
+
+    @Test
+    public void dropsFailuresOfFinishedGeneration() throws InterruptedException
+    {
+        Results.Cyclic cyclic = new Results.Cyclic();
+        assertThatThrownBy(() -> cyclic.await(100))
+            .isInstanceOf(AssertionError.class);
+
+        cyclic.addFailure(0, new IllegalStateException("stale"));
+        cyclic.addSuccess();
+
+        cyclic.await(100);
+        assertEquals(1, cyclic.stale());
+    }
+
+    private static void awaitLatch(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExplorerTest
+{
+    private final List<Consumer<? super Counter>> increments = Arrays.asList(
+        Counter::increment, Counter::increment
+    );
+
+    @Test
+    public void findsLostUpdate()
+    {
+        AssertionError error = assertThrows(
+            AssertionError.class,
+            () -> new AsyncFlow.Explorer(1000).explore(Counter::new, increments, counter -> assertEquals(2, counter.value))
+        );
+
+        Throwable[] suppressed = error.getSuppressed();
+        assertThat(suppressed[suppressed.length - 1].getMessage()).contains("replay it with Explorer.replay");
+    }
+
+    @Test
+    public void findsLostUpdateWithBoundedPreemption()
+    {
+        AsyncFlow.Explorer explorer = new AsyncFlow.Explorer(1000).withPreemptionBound(1);
+        Consumer<Counter> check = counter -> assertEquals(2, counter.value);
+        AssertionError error = assertThrows(
+            AssertionError.class, () -> explorer.explore(Counter::new, increments, check)
+        );
+        Throwable[] suppressed = error.getSuppressed();
+        String message = suppressed[suppressed.length - 1].getMessage();
+        assertThat(message).contains("on an explorer withPreemptionBound(1)");
+        Matcher seed = Pattern.compile("seed (-?\\d+)").matcher(message);
+        assertTrue(seed.find());
+
+        assertThrows(
+            AssertionError.class,
+            () -> new AsyncFlow.Explorer(1).withPreemptionBound(1)
+                .replay(Long.parseLong(seed.group(1)), Counter::new, increments, check)
+        );
+    }
+
+    @Test
+    public void rethrowsFailureOfAction()
+    {
+        List<Consumer<? super Counter>> actions = Arrays.asList(
+            Counter::increment,
+            counter -> {
+                throw new IllegalStateException("action");
+            }
+        );
+
+        assertThrows(
+            IllegalStateException.class,
+            () -> new AsyncFlow.Explorer(10).explore(Counter::new, actions, counter -> assertTrue(true))
+        );
+    }
+
+    @Test
+    public void replaysFailedSchedule()
+    {
+        AsyncFlow.Explorer explorer = new AsyncFlow.Explorer(1000).withSeed(42);
+        Consumer<Counter> check = counter -> assertEquals(2, counter.value);
+        AssertionError error = assertThrows(
+            AssertionError.class, () -> explorer.explore(Counter::new, increments, check)
+        );
+        Throwable[] suppressed = error.getSuppressed();
+        Matcher seed = Pattern.compile("seed (-?\\d+)").matcher(suppressed[suppressed.length - 1].getMessage());
+        assertTrue(seed.find());
+
+        for (int i = 0; i < 10; i++)
+        {
+            assertThrows(
+                AssertionError.class,
+                () -> explorer.replay(Long.parseLong(seed.group(1)), Counter::new, increments, check)
+            );
+        }
+    }
+
+    @Test
+    public void passesCorrectlySynchronizedCode() throws InterruptedException
+    {
+        List<Consumer<? super AtomicInteger>> actions = Arrays.asList(
+            AtomicInteger::incrementAndGet, AtomicInteger::incrementAndGet, AtomicInteger::incrementAndGet
+        );
+
+        ExplorationReport report = new AsyncFlow.Explorer(500)
+            .explore(AtomicInteger::new, actions, counter -> assertEquals(3, counter.get()));
+
+        assertEquals(500, report.schedules());
+        assertEquals(0, report.failures().length);
+    }
+
+    @Test
+    public void failsOnThreadBlockedOutsideOfYieldPoints()
+    {
+        List<Consumer<? super CountDownLatch>> actions = Arrays.asList(
+            latch -> {
+                try
+                {
+                    latch.await();
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            },
+            CountDownLatch::countDown
+        );
+
+        AssertionError error = assertThrows(
+            AssertionError.class,
+            () -> new AsyncFlow.Explorer(20).withParallelism(1).explore(() -> new CountDownLatch(1), actions, latch -> {})
+        );
+        assertThat(error.getMessage()).contains("made no progress");
+    }
+
+    @Test
+    public void ignoresYieldPointOutsideOfExploration()
+    {
+        Counter counter = new Counter();
+
+        counter.increment();
+
+        assertEquals(1, counter.value);
+    }
+
+    private static final class Counter
+    {
+        private int value;
+
+        void increment()
+        {
+            int read = value;
+            AsyncFlow.yieldPoint();
+            value = read + 1;
+        }
+    }
+}
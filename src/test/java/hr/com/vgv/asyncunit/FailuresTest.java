@@ -0,0 +1,95 @@
+package hr.com.vgv.asyncunit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FailuresTest
+{
+    @Test
+    public void drainsSingleFailureUnchanged()
+    {
+        Failures failures = new Failures();
+        IllegalStateException failure = new IllegalStateException("");
+
+        failures.add(failure);
+
+        assertSame(failure, failures.drain());
+        assertEquals(0, failure.getSuppressed().length);
+        assertTrue(failures.isEmpty());
+        assertNull(failures.drain());
+    }
+
+    @Test
+    public void keepsFirstFailuresAndAggregatesTheRest()
+    {
+        Failures failures = new Failures(3);
+        IllegalStateException first = new IllegalStateException("first");
+
+        failures.add(first);
+        for (int i = 0; i < 10_000; i++)
+        {
+            failures.add(new IllegalArgumentException(String.valueOf(i)));
+        }
+
+        Throwable error = failures.drain();
+        assertThat(error).isInstanceOf(AssertionError.class);
+        assertSame(first, error.getCause());
+        assertEquals(0, first.getSuppressed().length);
+        assertEquals(2, error.getSuppressed().length);
+        assertThat(error.getMessage()).contains("Flow failed 10001 times, first of 3 kept failures");
+        assertThat(error.getMessage()).contains("9998 x java.lang.IllegalArgumentException at");
+    }
+
+    @Test
+    public void drainsConcurrentlyAddedFailures()
+    {
+        Failures failures = new Failures(2);
+        IllegalStateException failure = new IllegalStateException("");
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++)
+                {
+                    failures.add(failure);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            while (thread.isAlive())
+            {
+                long count = failures.count();
+                Throwable error = failures.drain();
+                if (count > 0)
+                {
+                    assertThat(error).isNotNull();
+                }
+            }
+        }
+
+        assertEquals(0, failure.getSuppressed().length);
+    }
+
+    @Test
+    public void rethrowsAggregatedFailuresFromResults()
+    {
+        Results results = new Results.Synced(false, 2);
+
+        for (int i = 0; i < 100_000; i++)
+        {
+            results.addFailure(new IllegalStateException(String.valueOf(i)));
+        }
+
+        AssertionError error = assertThrows(AssertionError.class, () -> results.await(1000, 100_000));
+        assertEquals("0", error.getCause().getMessage());
+        assertThat(error.getMessage()).contains("Flow failed 100000 times");
+    }
+}
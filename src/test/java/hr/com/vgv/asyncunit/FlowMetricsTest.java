@@ -0,0 +1,194 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FlowMetricsTest
+{
+    @Test
+    public void countsExecutions() throws InterruptedException
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        flow.prepare(() -> assertTrue(true)).run();
+        Runnable failing = flow.prepare((Runnable) () -> {
+            throw new IllegalStateException("");
+        });
+        assertThrows(IllegalStateException.class, failing::run);
+
+        FlowState state = flow.metrics().state();
+        assertThat(state.getSuccesses()).isEqualTo(1L);
+        assertThat(state.getFailures()).isEqualTo(1L);
+        assertThat(state.getReceived()).isEqualTo(2L);
+        assertThat(state.getExpected()).isEqualTo(0);
+        assertThat(state.getAwaiting()).isNull();
+    }
+
+    @Test
+    public void sharesMetricsWithMeasuredFlow()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        flow.with(new Latencies()).prepare(() -> assertTrue(true)).run();
+
+        assertThat(flow.metrics().state().getSuccesses()).isEqualTo(1L);
+    }
+
+    @Test
+    public void measuresFailedTrackedFuture()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        Latencies latencies = new Latencies();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException(""));
+        flow.with(latencies).track(future);
+
+        assertThrows(IllegalStateException.class, () -> flow.await(1000));
+        assertThat(flow.metrics().state().getFailures()).isEqualTo(1L);
+        assertThat(latencies.count()).isEqualTo(1L);
+    }
+
+    @Test
+    public void sharesMetricsOfSameResults()
+    {
+        Results results = new Results.Synced();
+        AsyncFlow.Single first = new AsyncFlow.Single(results);
+        AsyncFlow.Single second = new AsyncFlow.Single(results);
+        first.prepare(() -> assertTrue(true)).run();
+        second.prepare(() -> assertTrue(true)).run();
+
+        String name = first.metrics().state().getName();
+        int rows = 0;
+        for (FlowState state : FlowMetrics.states())
+        {
+            if (state.getName().equals(name))
+            {
+                rows += 1;
+            }
+        }
+        assertThat(rows).isEqualTo(1);
+        assertThat(second.metrics().state().getSuccesses()).isEqualTo(2L);
+    }
+
+    @Test
+    public void dropsMetricsOfCollectedResults() throws InterruptedException
+    {
+        String name = new AsyncFlow.Single(new Results.Synced()).metrics().state().getName();
+
+        boolean live = true;
+        for (int i = 0; i < 50 && live; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+            live = false;
+            for (FlowState state : FlowMetrics.states())
+            {
+                live |= state.getName().equals(name);
+            }
+        }
+        assertThat(live).isFalse();
+    }
+
+    @Test
+    public void countsCheckpointExecutions() throws InterruptedException
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        flow.prepare("started", () -> assertTrue(true)).run();
+        flow.prepare("started", () -> assertTrue(true)).run();
+        flow.await("started", 1000, 2);
+
+        FlowState state = flow.metrics().state();
+        assertThat(state.getCheckpoints()).isEqualTo(2L);
+        assertThat(state.getReceived()).isEqualTo(0L);
+        assertThat(flow.metrics().reported()).isEqualTo(2L);
+    }
+
+    @Test
+    public void showsAwaitingThread() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        CountDownLatch awaiting = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try
+            {
+                awaiting.countDown();
+                flow.await(10_000, 2);
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }, "flow-awaiter");
+        thread.start();
+        awaiting.await();
+        flow.prepare(() -> assertTrue(true)).run();
+        while (flow.metrics().state().getExpected() == 0)
+        {
+            Sleep.now(1);
+        }
+
+        FlowState state = flow.metrics().state();
+        assertThat(state.getAwaiting()).isEqualTo("flow-awaiter");
+        assertThat(state.getExpected()).isEqualTo(2);
+        assertThat(state.getReceived()).isEqualTo(1L);
+
+        flow.prepare(() -> assertTrue(true)).run();
+        thread.join(1000);
+        assertThat(flow.metrics().state().getAwaiting()).isNull();
+        assertThat(flow.metrics().state().getReceived()).isEqualTo(0L);
+    }
+
+    @Test
+    public void accumulatesTimeSpentWaiting()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+
+        assertThrows(AssertionError.class, () -> flow.await(50));
+
+        assertThat(flow.metrics().state().getWaitingMillis()).isGreaterThanOrEqualTo(50L);
+    }
+
+    @Test
+    public void tracksAsyncAwait()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        CompletableFuture<Void> future = flow.awaitAsync(1, TimeUnit.SECONDS, 1);
+
+        assertThat(flow.metrics().state().getAwaiting()).isEqualTo("async");
+
+        flow.prepare(() -> assertTrue(true)).run();
+        future.join();
+        assertThat(flow.metrics().state().getAwaiting()).isNull();
+    }
+
+    @Test
+    public void exposesFlowsOverJmx() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        flow.prepare(() -> assertTrue(true)).run();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(FlowMetrics.MBEAN);
+
+        CompositeData found = null;
+        for (CompositeData data : (CompositeData[]) server.getAttribute(name, "Flows"))
+        {
+            if (data.get("name").equals(flow.metrics().state().getName()))
+            {
+                found = data;
+            }
+        }
+
+        assertThat(found).isNotNull();
+        assertThat(found.get("successes")).isEqualTo(1L);
+        assertThat(server.getAttribute(name, "Registered")).isInstanceOf(Integer.class);
+    }
+}
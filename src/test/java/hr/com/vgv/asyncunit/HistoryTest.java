@@ -0,0 +1,209 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HistoryTest
+{
+    @Test
+    public void acceptsLinearizableMap() throws InterruptedException
+    {
+        Map<Integer, Integer> map = new ConcurrentHashMap<>();
+        History<Integer, Integer, Integer> history = new History<>();
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        BiFunction<Integer, Integer, Integer> put = flow.prepareFn(history.record(map::put));
+
+        AsyncFlow.Stress stress = new AsyncFlow.Stress(flow, 8);
+        stress.run(8000, thread -> put.apply(thread % 16, thread));
+
+        assertEquals(8000, history.size());
+        history.assertLinearizable(new Register());
+    }
+
+    @Test
+    public void rejectsLostUpdate() throws InterruptedException
+    {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Map<Integer, Integer> map = new ConcurrentHashMap<>();
+        History<Integer, Integer, Integer> history = new History<>();
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        BiFunction<Integer, Integer, Integer> put = flow.prepareFn(
+            history.record(
+                (Integer key, Integer value) -> {
+                    Integer previous = map.get(key);
+                    await(barrier);
+                    map.put(key, value);
+                    return previous;
+                }
+            )
+        );
+
+        new Thread(() -> put.apply(1, 1)).start();
+        new Thread(() -> put.apply(1, 2)).start();
+        flow.await(1000, 2);
+
+        AssertionError error = assertThrows(AssertionError.class, () -> history.assertLinearizable(new Register()));
+        assertThat(error.getMessage()).contains("History of 2 operations in partition 1 is not linearizable");
+    }
+
+    @Test
+    public void checksLargeSinglePartitionHistory() throws InterruptedException
+    {
+        AtomicInteger counter = new AtomicInteger();
+        History<Integer, Void, Integer> history = new History<>();
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        Function<Integer, Integer> add = flow.prepareFn(history.record((Integer delta) -> counter.addAndGet(delta)));
+
+        new AsyncFlow.Stress(flow, 4).run(4000, thread -> add.apply(1));
+
+        long start = System.nanoTime();
+        history.assertLinearizable(new Counter());
+        assertThat(System.nanoTime() - start).isLessThan(10_000_000_000L);
+    }
+
+    @Test
+    public void rejectsImpossibleCounterResult() throws InterruptedException
+    {
+        History<Integer, Void, Integer> history = new History<>();
+        Function<Integer, Integer> add = history.record((Integer delta) -> 5);
+
+        add.apply(1);
+
+        assertThrows(AssertionError.class, () -> history.assertLinearizable(new Counter()));
+    }
+
+    @Test
+    public void keepsThrowingOperations() throws InterruptedException
+    {
+        AtomicInteger counter = new AtomicInteger();
+        History<Integer, Void, Integer> history = new History<>();
+        AsyncFlow.Single flow = new AsyncFlow.Single(AssertionError.class);
+        Function<Integer, Integer> add = flow.prepareFn(
+            history, (Integer delta) -> {
+                if (delta < 0)
+                {
+                    throw new IllegalArgumentException("negative");
+                }
+                return counter.addAndGet(delta);
+            }
+        );
+
+        assertThrows(IllegalArgumentException.class, () -> add.apply(-1));
+        add.apply(1);
+
+        flow.await(1000, 1);
+        assertEquals(2, history.size());
+        history.assertLinearizable(new Counter());
+    }
+
+    @Test
+    public void rejectsForbiddenThrowingOperation()
+    {
+        History<Integer, Void, Integer> history = new History<>();
+        Function<Integer, Integer> add = history.record(
+            (Integer delta) -> {
+                throw new IllegalStateException("full");
+            }
+        );
+        assertThrows(IllegalStateException.class, () -> add.apply(1));
+
+        AssertionError error = assertThrows(
+            AssertionError.class, () -> history.assertLinearizable(
+                new History.Model<Integer, Integer, Void, Integer>()
+                {
+                    @Override
+                    public Integer initial()
+                    {
+                        return 0;
+                    }
+
+                    @Override
+                    public Integer apply(Integer state, Integer delta, Void unused, Integer result)
+                    {
+                        return state + delta;
+                    }
+
+                    @Override
+                    public Integer fail(Integer state, Integer delta, Void unused, Throwable throwable)
+                    {
+                        return null;
+                    }
+                }
+            )
+        );
+        assertThat(error.getMessage()).contains("threw java.lang.IllegalStateException: full");
+    }
+
+    private static void await(CyclicBarrier barrier)
+    {
+        try
+        {
+            barrier.await();
+        }
+        catch (Exception exception)
+        {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Map of registers, partitioned by key. Put returns previous value. Empty register has state -1.
+     */
+    private static final class Register implements History.Model<Integer, Integer, Integer, Integer>
+    {
+        @Override
+        public Integer initial()
+        {
+            return -1;
+        }
+
+        @Override
+        public Integer apply(Integer state, Integer key, Integer value, Integer result)
+        {
+            if (Objects.equals(state == -1 ? null : state, result))
+            {
+                return value;
+            }
+            return null;
+        }
+
+        @Override
+        public Object partition(Integer key, Integer value)
+        {
+            return key;
+        }
+    }
+
+    /**
+     * Counter whose add returns the new value.
+     */
+    private static final class Counter implements History.Model<Integer, Integer, Void, Integer>
+    {
+        @Override
+        public Integer initial()
+        {
+            return 0;
+        }
+
+        @Override
+        public Integer apply(Integer state, Integer delta, Void unused, Integer result)
+        {
+            if (state + delta == result)
+            {
+                return result;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LatenciesTest
+{
+    @Test
+    public void reportsPercentilesWithinBucketPrecision()
+    {
+        Latencies latencies = new Latencies();
+        for (long i = 1; i <= 1000; i++)
+        {
+            latencies.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertEquals(1000, latencies.count());
+        assertEquals(1000, latencies.max(TimeUnit.MICROSECONDS));
+        assertThat(latencies.percentile(0.5, TimeUnit.MICROSECONDS)).isBetween(500L, 516L);
+        assertThat(latencies.percentile(0.99, TimeUnit.MICROSECONDS)).isBetween(990L, 1000L);
+        assertThat(latencies.percentile(1, TimeUnit.MICROSECONDS)).isEqualTo(1000L);
+    }
+
+    @Test
+    public void recordsExecutionsOfMeasuredFlow() throws InterruptedException
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new Latencies());
+
+        for (int i = 0; i < 10; i++)
+        {
+            new Thread(flow.prepare((Runnable) () -> Sleep.now(1))).start();
+        }
+
+        Report report = flow.awaitReport(1000, 10).assertP99Below(1, TimeUnit.SECONDS);
+        assertEquals(10, report.probe(Latencies.class).count());
+    }
+
+    @Test
+    public void failsOnSlowExecutions()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new Latencies());
+
+        new Thread(flow.prepare((Runnable) Sleep::now)).start();
+
+        assertThatThrownBy(() -> flow.awaitReport(1000).assertP99Below(10, TimeUnit.MILLISECONDS))
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("Latency percentile 99.0 was");
+    }
+
+    @Test
+    public void failsOnLatencyAssertionOfUnmeasuredFlow()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+
+        flow.prepare(() -> { }).run();
+
+        assertThatThrownBy(() -> flow.awaitReport(1000).assertP99Below(1, TimeUnit.SECONDS))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Flow was not measured by Latencies probe");
+    }
+}
@@ -0,0 +1,135 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PreparedExecutorTest
+{
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void shutdown()
+    {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void reportsSubmittedTasks() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        ExecutorService executor = flow.wrap(pool);
+
+        executor.execute(() -> assertTrue(true));
+        executor.submit(() -> assertTrue(true));
+        Future<Integer> future = executor.submit(() -> 1);
+
+        flow.await(1000, 3);
+        assertEquals(1, (int) future.get());
+    }
+
+    @Test
+    public void reportsInvokedBatch() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        List<Callable<Integer>> tasks = Arrays.asList(() -> 1, () -> 2, () -> 3);
+
+        flow.wrap(pool).invokeAll(tasks);
+
+        flow.await(1000, 3);
+    }
+
+    @Test
+    public void failsOnExceptionInSubmittedCallable()
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+
+        flow.wrap(pool).submit(() -> {
+            throw new IllegalStateException("");
+        });
+
+        assertThrows(IllegalStateException.class, () -> flow.await(1000));
+    }
+
+    @Test
+    public void tracksQueueDepthAndActiveCount() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        PreparedExecutor executor = flow.wrap(single);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.submit(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        executor.submit(() -> assertTrue(true));
+        executor.submit(() -> assertTrue(true));
+        started.await();
+
+        assertEquals(1, executor.activeCount());
+        assertEquals(2, executor.queueDepth());
+
+        release.countDown();
+        flow.await(1000, 3);
+        single.shutdown();
+    }
+
+    @Test
+    public void dequeuesCancelledTask() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        PreparedExecutor executor = flow.wrap(single);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.submit(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        Future<?> cancelled = executor.submit(() -> assertTrue(true));
+        executor.submit(() -> assertTrue(true));
+        started.await();
+        cancelled.cancel(false);
+
+        assertEquals(1, executor.queueDepth());
+        release.countDown();
+        flow.await(1000, 2);
+        single.shutdown();
+    }
+
+    @Test
+    public void dequeuesTasksDrainedByShutdownNow() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        PreparedExecutor executor = flow.wrap(Executors.newSingleThreadExecutor());
+        CountDownLatch started = new CountDownLatch(1);
+
+        executor.submit(() -> {
+            started.countDown();
+            new CountDownLatch(1).await();
+            return null;
+        });
+        executor.submit(() -> assertTrue(true));
+        executor.execute(() -> assertTrue(true));
+        started.await();
+
+        assertEquals(2, executor.shutdownNow().size());
+        assertEquals(0, executor.queueDepth());
+    }
+}
@@ -0,0 +1,144 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PropagatingExecutorTest
+{
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void shutdown()
+    {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void propagatesFlowToThread() throws InterruptedException
+    {
+        new Thread(AsyncFlow.propagate(() -> AsyncFlow.prepare(() -> assertTrue(true)).run())).start();
+
+        AsyncFlow.await(1000);
+    }
+
+    @Test
+    public void propagatesFlowToSubmittedTasks() throws Exception
+    {
+        ExecutorService executor = AsyncFlow.propagate(pool);
+
+        executor.execute(() -> AsyncFlow.prepare(() -> assertTrue(true)).run());
+        executor.submit(() -> AsyncFlow.prepare(() -> assertTrue(true)).run());
+        executor.submit(() -> AsyncFlow.prepareFn((Integer value) -> value + 1).apply(1)).get();
+
+        AsyncFlow.await(1000, 3);
+    }
+
+    @Test
+    public void propagatesFlowToInvokedBatch() throws Exception
+    {
+        List<Callable<Integer>> tasks = Arrays.asList(
+            () -> AsyncFlow.prepare(() -> 1).get(),
+            () -> AsyncFlow.prepare(() -> 2).get()
+        );
+
+        AsyncFlow.propagate(pool).invokeAll(tasks);
+
+        AsyncFlow.await(1000, 2);
+    }
+
+    @Test
+    public void propagatesFlowToNestedTasks() throws InterruptedException
+    {
+        ExecutorService executor = AsyncFlow.propagate(pool);
+
+        executor.execute(
+            () -> executor.execute(() -> AsyncFlow.prepare(() -> assertTrue(true)).run())
+        );
+
+        AsyncFlow.await(1000);
+    }
+
+    @Test
+    public void propagatesFlowToForkJoinTasks() throws InterruptedException
+    {
+        ForkJoinPool.commonPool().invoke(AsyncFlow.propagate(new Split(0, 64)));
+
+        AsyncFlow.await(1000, 64);
+    }
+
+    @Test
+    public void propagatesFailureFromPoolTask()
+    {
+        AsyncFlow.propagate(pool).execute(
+            () -> AsyncFlow.prepare((Runnable) () -> {
+                throw new IllegalStateException("");
+            }).run()
+        );
+
+        assertThrows(IllegalStateException.class, () -> AsyncFlow.await(1000));
+    }
+
+    @Test
+    public void restoresWorkerFlowAfterTask() throws Exception
+    {
+        AsyncFlow.Single[] flows = new AsyncFlow.Single[2];
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try
+        {
+            single.submit(() -> flows[0] = AsyncFlow.currentFlow()).get();
+            AsyncFlow.Single parent = AsyncFlow.currentFlow();
+            single.submit(AsyncFlow.propagate(() -> assertSame(parent, AsyncFlow.currentFlow()))).get();
+            single.submit(() -> flows[1] = AsyncFlow.currentFlow()).get();
+
+            assertSame(flows[0], flows[1]);
+            assertNotSame(parent, flows[1]);
+        }
+        finally
+        {
+            single.shutdownNow();
+        }
+    }
+
+    private static final class Split extends RecursiveAction
+    {
+        private final int from;
+
+        private final int to;
+
+        Split(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                AsyncFlow.prepare(() -> assertTrue(true)).run();
+            }
+            else
+            {
+                int middle = (from + to) / 2;
+                invokeAll(
+                    AsyncFlow.propagate(new Split(from, middle)),
+                    AsyncFlow.propagate(new Split(middle, to))
+                );
+            }
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package hr.com.vgv.asyncunit;
 
 import java.util.Queue;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,7 +24,12 @@ public class ResultsTest
     @BeforeEach
     public void setup()
     {
-        results = new Results.Synced();
+        results = results(false);
+    }
+
+    protected Results results(boolean failFast)
+    {
+        return new Results.Synced(failFast);
     }
 
     @Test
@@ -145,6 +156,144 @@ public class ResultsTest
         }
     }
 
+    @Test
+    public void returnsOnFirstFailureInFailFastMode()
+    {
+        Results failFast = results(true);
+        new Thread(() -> {
+            Sleep.now();
+            failFast.addFailure(new IllegalStateException(""));
+        }).start();
+
+        long start = System.nanoTime();
+        Assertions.assertThrows(IllegalStateException.class, () -> failFast.await(10_000, 10_000));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5_000L);
+    }
+
+    @Test
+    public void returnsOnFailureReceivedBeforeAwaitInFailFastMode()
+    {
+        Results failFast = results(true);
+        failFast.addSuccess();
+        failFast.addFailure(new IllegalStateException(""));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> failFast.await(10_000, 10_000));
+    }
+
+    @Test
+    public void dropsLateResultsOfFailFastRound()
+    {
+        Results failFast = results(true);
+        long generation = failFast.begin();
+        failFast.addFailure(generation, new IllegalStateException(""));
+        Assertions.assertThrows(IllegalStateException.class, () -> failFast.await(10_000, 2));
+
+        failFast.addSuccess(generation);
+        failFast.addFailure(generation, new IllegalStateException(""));
+
+        assertThatThrownBy(() -> failFast.await(100))
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("Number of flow executions was 0 instead of 1");
+    }
+
+    @Test
+    public void completesFutureWhenAllResultsReceived() throws Exception
+    {
+        CompletableFuture<Void> future = results.awaitAsync(4000, TimeUnit.MILLISECONDS, 4);
+        for (int i = 0; i < 4; i++)
+        {
+            new Thread(() -> {
+                Sleep.now();
+                results.addSuccess();
+            }).start();
+        }
+
+        future.get(4000, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void completesFutureOnResultsReceivedBeforeAwait() throws Exception
+    {
+        results.addSuccess();
+        results.addSuccess();
+
+        results.awaitAsync(0, TimeUnit.MILLISECONDS, 2).get(1000, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void completesFutureExceptionallyOnTimeout()
+    {
+        results.addSuccess();
+        CompletableFuture<Void> future = results.awaitAsync(100, TimeUnit.MILLISECONDS, 2);
+
+        assertThatThrownBy(future::join)
+            .isInstanceOf(CompletionException.class)
+            .hasMessageContaining("Number of flow executions was 1 instead of 2");
+    }
+
+    @Test
+    public void completesFutureExceptionallyOnFailure()
+    {
+        CompletableFuture<Void> future = results.awaitAsync(1000, TimeUnit.MILLISECONDS, 2);
+        new Thread(() -> results.addSuccess()).start();
+        new Thread(() -> results.addFailure(new IllegalStateException(""))).start();
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, future::get);
+        assertThat(exception.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void keepsFailFastFailureInItsRound() throws InterruptedException
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single(results(true));
+        CyclicBarrier started = new CyclicBarrier(2);
+        Runnable failing = flow.prepare((Runnable) () -> {
+            awaitBarrier(started);
+            throw new IllegalStateException("");
+        });
+        Runnable passing = flow.prepare(() -> awaitBarrier(started));
+
+        for (int round = 0; round < 1000; round++)
+        {
+            Thread first = new Thread(() -> runQuietly(failing));
+            Thread second = new Thread(passing);
+            first.start();
+            second.start();
+            assertThatThrownBy(() -> flow.await(5000, 2))
+                .isInstanceOf(IllegalStateException.class);
+            first.join();
+            second.join();
+
+            assertThatThrownBy(() -> flow.await(1, 1))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("Number of flow executions was 0 instead of 1");
+        }
+    }
+
+    private static void awaitBarrier(CyclicBarrier barrier)
+    {
+        try
+        {
+            barrier.await();
+        }
+        catch (InterruptedException | BrokenBarrierException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runQuietly(Runnable runnable)
+    {
+        try
+        {
+            runnable.run();
+        }
+        catch (IllegalStateException ignored)
+        {
+            // Failure is reported to the flow
+        }
+    }
+
     private void awaitResults()
     {
         try
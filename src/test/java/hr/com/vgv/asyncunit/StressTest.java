@@ -0,0 +1,71 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StressTest
+{
+    @Test
+    public void runsGivenNumberOfInvocations() throws InterruptedException
+    {
+        AtomicLong counter = new AtomicLong();
+
+        StressReport report = new AsyncFlow.Stress(8).run(100_003, (Runnable) counter::incrementAndGet);
+
+        assertEquals(100_003, counter.get());
+        assertEquals(100_003, report.invocations());
+        assertEquals(0, report.failures());
+        assertEquals(8, report.distribution().length);
+        assertThat(Arrays.stream(report.distribution()).max().getAsLong()).isEqualTo(12_501L);
+        assertThat(report.throughput() > 0).isTrue();
+    }
+
+    @Test
+    public void runsForGivenDuration() throws InterruptedException
+    {
+        StressReport report = new AsyncFlow.Stress(4).run(200, TimeUnit.MILLISECONDS, thread -> thread);
+
+        assertThat(report.invocations()).isGreaterThan(0L);
+        assertThat(report.elapsed(TimeUnit.MILLISECONDS)).isBetween(200L, 5_000L);
+    }
+
+    @Test
+    public void failsWithRunSummaryOnFailedInvocations()
+    {
+        AtomicLong counter = new AtomicLong();
+
+        AssertionError exception = assertThrows(
+            AssertionError.class,
+            () -> new AsyncFlow.Stress(4).run(1000, (Runnable) () -> {
+                if (counter.incrementAndGet() % 100 == 0)
+                {
+                    throw new IllegalStateException("");
+                }
+            })
+        );
+
+        Throwable summary = exception.getSuppressed()[exception.getSuppressed().length - 1];
+        assertEquals(1000, counter.get());
+        assertThat(exception.getCause()).isInstanceOf(IllegalStateException.class);
+        assertThat(summary.getMessage()).contains("1000 invocations on 4 threads");
+        assertThat(summary.getMessage()).contains("10 failed");
+    }
+
+    @Test
+    public void measuresExecutionsOfGivenFlow() throws InterruptedException
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single().with(new Latencies());
+
+        StressReport report = new AsyncFlow.Stress(flow, 4).run(1000, (Runnable) () -> { });
+
+        report.flow().assertP99Below(1, TimeUnit.SECONDS);
+        assertEquals(1000, report.flow().probe(Latencies.class).count());
+    }
+}
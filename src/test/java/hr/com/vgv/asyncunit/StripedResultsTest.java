@@ -0,0 +1,88 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StripedResultsTest extends ResultsTest
+{
+    @Override
+    protected Results results(boolean failFast)
+    {
+        return new Results.Striped(failFast);
+    }
+
+    @Test
+    public void waitsForResultsFromManyThreads() throws InterruptedException
+    {
+        Results striped = new Results.Striped();
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < 64; i++)
+        {
+            new Thread(() -> {
+                awaitStart(start);
+                for (int j = 0; j < 1000; j++)
+                {
+                    striped.addSuccess();
+                }
+            }).start();
+        }
+        start.countDown();
+
+        striped.await(5000, 64_000);
+    }
+
+    @Test
+    public void completesAsyncAwaitOfManyResults()
+    {
+        Results striped = new Results.Striped();
+        CompletableFuture<Void> future = striped.awaitAsync(5000, TimeUnit.MILLISECONDS, 10_000);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < 8; i++)
+        {
+            new Thread(() -> {
+                awaitStart(start);
+                for (int j = 0; j < 1250; j++)
+                {
+                    striped.addSuccess();
+                }
+            }).start();
+        }
+        start.countDown();
+
+        future.join();
+    }
+
+    @Test
+    public void discardsResultsOfPreviousAwait() throws InterruptedException
+    {
+        Results striped = new Results.Striped();
+        for (int i = 0; i < 3; i++)
+        {
+            striped.addSuccess();
+        }
+        striped.await(100, 2);
+
+        assertThatThrownBy(() -> striped.await(100, 1))
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("Number of flow executions was 0 instead of 1");
+    }
+
+    private static void awaitStart(CountDownLatch start)
+    {
+        try
+        {
+            start.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package hr.com.vgv.asyncunit;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThrowableMatcherTest
+{
+    @Test
+    public void matchesWholeHierarchy()
+    {
+        ThrowableMatcher matcher = new ThrowableMatcher(Exception.class);
+
+        assertTrue(matcher.matches(new Exception()));
+        assertTrue(matcher.matches(new IOException()));
+        assertTrue(matcher.matches(new FileNotFoundException()));
+        assertFalse(matcher.matches(new AssertionError()));
+    }
+
+    @Test
+    public void matchesInterfaces()
+    {
+        ThrowableMatcher matcher = new ThrowableMatcher(Collections.singletonList(Marker.class));
+
+        assertTrue(matcher.matches(new MarkedException()));
+        assertFalse(matcher.matches(new IllegalStateException()));
+    }
+
+    @Test
+    public void keepsDecisionForRepeatedFailures()
+    {
+        ThrowableMatcher matcher = new ThrowableMatcher(UncheckedIOException.class, IllegalStateException.class);
+
+        for (int i = 0; i < 1000; i++)
+        {
+            assertTrue(matcher.matches(new IllegalStateException()));
+            assertFalse(matcher.matches(new IllegalArgumentException()));
+        }
+    }
+
+    @Test
+    public void relatesDerivedClassThroughMatcher()
+    {
+        assertTrue(new DerivedClass(MarkedException.class).isRelatedTo(Marker.class));
+        assertTrue(new DerivedClass(FileNotFoundException.class).isRelatedTo(Throwable.class));
+        assertFalse(new DerivedClass(IOException.class).isRelatedTo(RuntimeException.class));
+    }
+
+    private interface Marker
+    {
+    }
+
+    private static class MarkedException extends RuntimeException implements Marker
+    {
+    }
+}
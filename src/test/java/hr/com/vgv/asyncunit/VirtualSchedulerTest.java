@@ -0,0 +1,195 @@
+package hr.com.vgv.asyncunit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VirtualSchedulerTest
+{
+    private final VirtualScheduler scheduler = new VirtualScheduler();
+
+    private final AsyncFlow.Single flow = new AsyncFlow.Single(new Results.Virtual(scheduler));
+
+    @Test
+    public void collapsesBackoffIntoVirtualTime() throws InterruptedException
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+
+        scheduler.execute(new Retry(attempts, 3));
+
+        flow.await(60_000);
+        assertEquals(4, attempts.get());
+        assertEquals(30, scheduler.now(TimeUnit.SECONDS));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5_000L);
+    }
+
+    @Test
+    public void saturatesLongestDelay()
+    {
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.advance(1, TimeUnit.SECONDS);
+        scheduler.schedule(runs::incrementAndGet, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        scheduler.schedule(runs::incrementAndGet, 1, TimeUnit.SECONDS);
+
+        scheduler.advance(Long.MAX_VALUE, TimeUnit.DAYS);
+        assertEquals(2, runs.get());
+        assertEquals(Long.MAX_VALUE, scheduler.now(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void failsAfterVirtualTimeout()
+    {
+        scheduler.schedule(flow.prepare(() -> assertTrue(true)), 10, TimeUnit.SECONDS);
+
+        AssertionError error = assertThrows(AssertionError.class, () -> flow.await(5_000));
+        assertThat(error.getMessage()).contains("Number of flow executions was 0 instead of 1 after 5000 ms");
+        assertEquals(1, scheduler.scheduled());
+    }
+
+    @Test
+    public void propagatesFailureOfScheduledTask()
+    {
+        scheduler.schedule(
+            flow.prepare((Runnable) () -> {
+                throw new IllegalStateException("");
+            }),
+            1, TimeUnit.HOURS
+        );
+
+        assertThrows(IllegalStateException.class, () -> flow.await(2, TimeUnit.HOURS));
+    }
+
+    @Test
+    public void waitsForExecutionsOnOtherThreads() throws InterruptedException
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        new Thread(
+            flow.prepare(() -> {
+                started.countDown();
+                Sleep.now(100);
+                scheduler.schedule(flow.prepare(() -> assertTrue(true)), 1, TimeUnit.MINUTES);
+            })
+        ).start();
+        started.await();
+
+        flow.await(2, TimeUnit.MINUTES, 2);
+        assertEquals(1, scheduler.now(TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void waitsForQueuedExecutions() throws InterruptedException
+    {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try
+        {
+            pool.execute(() -> Sleep.now(100));
+            flow.wrap(pool).execute(
+                () -> scheduler.schedule(flow.prepare(() -> assertTrue(true)), 1, TimeUnit.MINUTES)
+            );
+
+            flow.await(2, TimeUnit.MINUTES, 2);
+            assertEquals(1, scheduler.now(TimeUnit.MINUTES));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void awaitsWithoutBlockingCaller() throws InterruptedException
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        new Thread(
+            flow.prepare(() -> {
+                started.countDown();
+                awaitLatch(release);
+            })
+        ).start();
+        started.await();
+
+        CompletableFuture<Void> future = flow.awaitAsync(1, TimeUnit.MINUTES, 1);
+        release.countDown();
+
+        future.join();
+        assertEquals(0, scheduler.now(TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void runsPeriodicTasksInOrder()
+    {
+        List<String> runs = new ArrayList<>();
+        ScheduledFuture<?> rate = scheduler.scheduleAtFixedRate(() -> runs.add("rate"), 0, 2, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(() -> runs.add("delay"), 1, 3, TimeUnit.SECONDS);
+
+        scheduler.advance(7, TimeUnit.SECONDS);
+        rate.cancel(false);
+        scheduler.advance(10, TimeUnit.SECONDS);
+
+        assertThat(runs.subList(0, 7).toString()).isEqualTo("[rate, delay, rate, delay, rate, rate, delay]");
+        assertEquals(10, runs.size());
+    }
+
+    @Test
+    public void reportsDelayOnVirtualClock()
+    {
+        ScheduledFuture<?> future = scheduler.schedule(() -> assertTrue(true), 5, TimeUnit.SECONDS);
+
+        scheduler.advance(2, TimeUnit.SECONDS);
+
+        assertEquals(3, future.getDelay(TimeUnit.SECONDS));
+    }
+
+    private static void awaitLatch(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Retry implements Runnable
+    {
+        private final AtomicInteger attempts;
+
+        private final int failures;
+
+        Retry(AtomicInteger attempts, int failures)
+        {
+            this.attempts = attempts;
+            this.failures = failures;
+        }
+
+        @Override
+        public void run()
+        {
+            if (attempts.incrementAndGet() <= failures)
+            {
+                scheduler.schedule(this, 10, TimeUnit.SECONDS);
+            }
+            else
+            {
+                flow.prepare(() -> assertTrue(true)).run();
+            }
+        }
+    }
+}
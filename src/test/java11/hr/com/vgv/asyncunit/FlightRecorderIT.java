@@ -0,0 +1,121 @@
+package hr.com.vgv.asyncunit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against the packaged multi-release jar, so Java 11 classes are loaded.
+ */
+public class FlightRecorderIT
+{
+    private static final String EXECUTION = "hr.com.vgv.asyncunit.Execution";
+
+    private static final String AWAIT = "hr.com.vgv.asyncunit.Await";
+
+    @Test
+    public void recordsExecutionsAndAwait() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording())
+        {
+            recording.enable(EXECUTION);
+            recording.enable(AWAIT);
+            recording.start();
+            flow.prepare(() -> assertTrue(true)).run();
+            new Thread(flow.prepare(() -> assertTrue(true))).start();
+            new Thread(
+                flow.prepare((Runnable) () -> {
+                    throw new IllegalStateException("");
+                })
+            ).start();
+            assertThrows(IllegalStateException.class, () -> flow.await(1000, 3));
+            recording.stop();
+            events = events(recording);
+        }
+
+        List<RecordedEvent> executions = named(events, EXECUTION);
+        List<RecordedEvent> awaits = named(events, AWAIT);
+        assertThat(executions.size()).isEqualTo(3);
+        assertThat(
+            executions.stream().filter(event -> event.getString("failure") != null)
+                .map(event -> event.getString("failure")).collect(Collectors.toList())
+        ).isEqualTo(Collections.singletonList(IllegalStateException.class.getName()));
+        assertThat(awaits.size()).isEqualTo(1);
+        assertThat(awaits.get(0).getInt("expected")).isEqualTo(3);
+        assertThat(awaits.get(0).getLong("received")).isEqualTo(3L);
+        assertThat(awaits.get(0).getLong("failures")).isEqualTo(1L);
+    }
+
+    @Test
+    public void recordsTimedOutAwait() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording())
+        {
+            recording.enable(AWAIT);
+            recording.start();
+            flow.prepare(() -> assertTrue(true)).run();
+            assertThrows(AssertionError.class, () -> flow.await(10, 2));
+            recording.stop();
+            events = events(recording);
+        }
+
+        List<RecordedEvent> awaits = named(events, AWAIT);
+        assertThat(awaits.size()).isEqualTo(1);
+        assertThat(awaits.get(0).getInt("expected")).isEqualTo(2);
+        assertThat(awaits.get(0).getLong("received")).isEqualTo(1L);
+    }
+
+    @Test
+    public void recordsExecutionsOnlyWhenEnabled() throws Exception
+    {
+        AsyncFlow.Single flow = new AsyncFlow.Single();
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording())
+        {
+            recording.enable(AWAIT);
+            recording.start();
+            flow.prepare(() -> assertTrue(true)).run();
+            recording.stop();
+            events = events(recording);
+        }
+
+        assertThat(named(events, EXECUTION).size()).isEqualTo(0);
+    }
+
+    private static List<RecordedEvent> events(Recording recording) throws IOException
+    {
+        Path file = Files.createTempFile("asyncunit", ".jfr");
+        try
+        {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name)
+    {
+        return events.stream()
+            .filter(event -> event.getEventType().getName().equals(name))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,148 @@
+package hr.com.vgv.asyncunit;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against the packaged multi-release jar, so Java 21 classes are loaded.
+ */
+public class VirtualThreadFlowIT
+{
+    private static final int EXECUTIONS = 1_000_000;
+
+    @Test
+    public void reportsVirtualThreadExecutionsToParentFlow() throws InterruptedException
+    {
+        AsyncFlow.prepare(() -> assertTrue(true)).run();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                executor.execute(() -> AsyncFlow.prepare(() -> assertTrue(true)).run());
+            }
+        }
+
+        AsyncFlow.await(1000, 11);
+    }
+
+    @Test
+    public void propagatesFailureFromVirtualThread() throws InterruptedException
+    {
+        AsyncFlow.prepare(() -> assertTrue(true)).run();
+
+        Thread.ofVirtual().start(
+            () -> AsyncFlow.prepare((Runnable) () -> {
+                throw new IllegalStateException("");
+            }).run()
+        ).join();
+
+        assertThrows(IllegalStateException.class, () -> AsyncFlow.await(1000, 2));
+    }
+
+    @Test
+    public void keepsPlatformThreadFlowsApart() throws InterruptedException
+    {
+        AsyncFlow.prepare(() -> assertTrue(true)).run();
+
+        Thread thread = new Thread(() -> AsyncFlow.prepare(() -> assertTrue(true)).run());
+        thread.start();
+        thread.join();
+
+        AsyncFlow.await(1000, 1);
+    }
+
+    @Test
+    public void releasesFlowInheritedByPlatformThread() throws InterruptedException
+    {
+        AsyncFlow.prepare(() -> assertTrue(true)).run();
+        WeakReference<AsyncFlow.Single> flow = new WeakReference<>(AsyncFlow.currentFlow());
+        CountDownLatch stop = new CountDownLatch(1);
+        Thread worker = new Thread(() -> awaitLatch(stop));
+        worker.start();
+
+        AsyncFlow.await(1000, 1);
+        for (int i = 0; i < 50 && flow.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        stop.countDown();
+        worker.join();
+
+        assertThat(flow.get()).isNull();
+    }
+
+    @Test
+    public void propagatesVirtualThreadFlowToPlatformPool() throws InterruptedException
+    {
+        AsyncFlow.prepare(() -> assertTrue(true)).run();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try
+        {
+            Thread.ofVirtual().start(
+                () -> {
+                    ExecutorService propagating = AsyncFlow.propagate(pool);
+                    for (int i = 0; i < 4; i++)
+                    {
+                        propagating.execute(() -> AsyncFlow.prepare(() -> assertTrue(true)).run());
+                    }
+                }
+            ).join();
+
+            AsyncFlow.await(1000, 5);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void runsMillionVirtualThreadsWithBoundedMemory() throws InterruptedException
+    {
+        int registered = AsyncFlow.registered();
+        AsyncFlow.prepare(() -> assertTrue(true)).run();
+        long before = used();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (int i = 0; i < EXECUTIONS; i++)
+            {
+                executor.execute(() -> AsyncFlow.prepare(() -> assertTrue(true)).run());
+            }
+        }
+
+        assertThat(AsyncFlow.registered()).isEqualTo(registered + 1);
+        assertThat(used() - before).isLessThan(64L * 1024 * 1024);
+        AsyncFlow.await(60, TimeUnit.SECONDS, EXECUTIONS + 1);
+    }
+
+    private static void awaitLatch(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long used()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}